@@ -0,0 +1,54 @@
+package de.poiu.fez;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.Z_Result;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+
+/**
+ * Checks that a {@link NamedThreadFactory} never creates two threads with the same name
+ * when called concurrently.
+ *
+ * @author mherrn
+ */
+@JCStressTest
+@Outcome(id = "false", expect = ACCEPTABLE, desc = "The thread names are distinct.")
+@Outcome(id = "true", expect = FORBIDDEN, desc = "Both threads got the same name.")
+@State
+public class NamedThreadFactoryStressTest {
+
+  private static final Runnable NOOP= new Runnable() {
+    @Override
+    public void run() {
+      // never started
+    }
+  };
+
+  private final NamedThreadFactory threadFactory= new NamedThreadFactory("stress");
+  private String name1;
+  private String name2;
+
+
+  @Actor
+  public void actor1() {
+    name1= threadFactory.newThread(NOOP).getName();
+  }
+
+
+  @Actor
+  public void actor2() {
+    name2= threadFactory.newThread(NOOP).getName();
+  }
+
+
+  @Arbiter
+  public void arbiter(final Z_Result r) {
+    r.r1= name1.equals(name2);
+  }
+}
@@ -0,0 +1,78 @@
+package de.poiu.fez;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.I_Result;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE_INTERESTING;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+
+/**
+ * Checks that a periodic {@link ResettableTimer} keeps running after concurrent resets.
+ * <p>
+ * Each reset cancels the previous future. The thread waiting for the completion of that future
+ * must not shut down the executor that is already used by the new future. Shutting it down
+ * cancels the periodic task, so the timer would then no longer be scheduled.
+ * <p>
+ * The arbiter waits for further executions of the task after the resets. The wait is bounded to
+ * not hang the test run. Exceeding it while the timer is still scheduled is only reported as
+ * interesting, since it may also be caused by an overloaded machine.
+ *
+ * @author mherrn
+ */
+@JCStressTest
+@Outcome(id = "1", expect = ACCEPTABLE, desc = "The timer is still running.")
+@Outcome(id = "0", expect = FORBIDDEN, desc = "The timer stopped after the resets.")
+@Outcome(id = "-1", expect = ACCEPTABLE_INTERESTING, desc = "The timer is scheduled, but did not execute within the timeout.")
+@State
+public class ResettableTimerPeriodicResetStressTest {
+
+  private volatile CountDownLatch executions= new CountDownLatch(0);
+  private final ResettableTimer timer= ResettableTimer.createScheduleAtFixedRate(0, 1, TimeUnit.MILLISECONDS, new Runnable() {
+    @Override
+    public void run() {
+      executions.countDown();
+    }
+  }, "PeriodicResetStressTest").start();
+
+
+  @Actor
+  public void actor1() {
+    timer.reset(false);
+  }
+
+
+  @Actor
+  public void actor2() {
+    timer.reset(false);
+  }
+
+
+  @Arbiter
+  public void arbiter(final I_Result r) {
+    // give the threads waiting for the cancelled futures the chance to (wrongly) shut down the
+    // executor before checking for further executions
+    final CountDownLatch latch= new CountDownLatch(3);
+    executions= latch;
+    boolean executed= false;
+    try {
+      executed= latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+
+    if (!timer.isScheduled()) {
+      r.r1= 0;
+    } else {
+      r.r1= executed ? 1 : -1;
+    }
+    timer.cancel(false);
+  }
+}
@@ -0,0 +1,53 @@
+package de.poiu.fez;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.Z_Result;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+
+
+/**
+ * Checks that concurrent calls of {@link ResettableTimer#reset(boolean)} and
+ * {@link ResettableTimer#cancel(boolean)} leave the timer in a consistent state and do not throw.
+ * <p>
+ * Whether the timer is scheduled afterwards only depends on which call came last.
+ *
+ * @author mherrn
+ */
+@JCStressTest
+@Outcome(id = "true", expect = ACCEPTABLE, desc = "cancel() came first, reset() rescheduled the timer.")
+@Outcome(id = "false", expect = ACCEPTABLE, desc = "reset() came first, cancel() stopped the timer.")
+@State
+public class ResettableTimerResetCancelStressTest {
+
+  private final ResettableTimer timer= ResettableTimer.createSchedule(1, TimeUnit.HOURS, new Runnable() {
+    @Override
+    public void run() {
+      // never executed
+    }
+  }, "ResetCancelStressTest").start();
+
+
+  @Actor
+  public void resetter() {
+    timer.reset(false);
+  }
+
+
+  @Actor
+  public void canceller() {
+    timer.cancel(false);
+  }
+
+
+  @Arbiter
+  public void arbiter(final Z_Result r) {
+    r.r1= timer.isScheduled();
+    timer.cancel(false);
+  }
+}
@@ -0,0 +1,76 @@
+package de.poiu.fez;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.I_Result;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE_INTERESTING;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+
+/**
+ * Checks that a {@link ResettableTimer#reset(boolean)} racing with the execution of the task
+ * never loses the execution.
+ * <p>
+ * The timer fires immediately after being started. The reset either happens before the execution
+ * (which is then only executed once) or after it (which leads to a second execution).
+ * In no case may the task not be executed at all, e.g. because the executor was shut down after
+ * the first execution while it was already used by the reset timer.
+ * <p>
+ * The arbiter waits for the first execution and then for the timer to be no longer scheduled.
+ * Both waits are bounded to not hang the test run. Exceeding them is only reported as interesting,
+ * since it may also be caused by an overloaded machine.
+ *
+ * @author mherrn
+ */
+@JCStressTest
+@Outcome(id = "1", expect = ACCEPTABLE, desc = "reset() came before the execution.")
+@Outcome(id = "2", expect = ACCEPTABLE, desc = "reset() came after the execution.")
+@Outcome(id = "0", expect = FORBIDDEN, desc = "The timer has finished without executing the task.")
+@Outcome(id = "-1", expect = ACCEPTABLE_INTERESTING, desc = "The timer did not settle within the timeout.")
+@State
+public class ResettableTimerResetFireStressTest {
+
+  private static final long TIMEOUT_NANOS= TimeUnit.SECONDS.toNanos(10);
+
+  private final AtomicInteger executions= new AtomicInteger();
+  private final CountDownLatch executed= new CountDownLatch(1);
+  private final ResettableTimer timer= ResettableTimer.createSchedule(0, TimeUnit.MILLISECONDS, new Runnable() {
+    @Override
+    public void run() {
+      executions.incrementAndGet();
+      executed.countDown();
+    }
+  }, "ResetFireStressTest").start();
+
+
+  @Actor
+  public void resetter() {
+    timer.reset(false);
+  }
+
+
+  @Arbiter
+  public void arbiter(final I_Result r) {
+    final long deadline= System.nanoTime() + TIMEOUT_NANOS;
+    try {
+      executed.await(TIMEOUT_NANOS, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    // a reset after the first execution leads to a second one
+    while (timer.isScheduled() && System.nanoTime() - deadline < 0) {
+      LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+    }
+    r.r1= timer.isScheduled() ? -1 : executions.get();
+    timer.cancel(false);
+  }
+}
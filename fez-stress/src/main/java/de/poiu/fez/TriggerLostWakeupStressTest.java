@@ -0,0 +1,44 @@
+package de.poiu.fez;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Mode;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.Signal;
+import org.openjdk.jcstress.annotations.State;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+
+/**
+ * Checks that a thread waiting in {@link Trigger#waitForTrigger()} is always woken up by a
+ * concurrent {@link Trigger#trigger()}, regardless of whether the trigger happens before or after
+ * the thread started waiting.
+ *
+ * @author mherrn
+ */
+@JCStressTest(Mode.Termination)
+@Outcome(id = "TERMINATED", expect = ACCEPTABLE, desc = "The waiting thread was woken up.")
+@Outcome(id = "STALE", expect = FORBIDDEN, desc = "Lost wakeup. The waiting thread was not woken up.")
+@State
+public class TriggerLostWakeupStressTest {
+
+  private final Trigger trigger= new Trigger("stress");
+
+
+  @Actor
+  public void waiter() {
+    try {
+      trigger.waitForTrigger();
+    } catch (InterruptedException ex) {
+      // jcstress interrupts stale actors. The outcome is STALE then anyway.
+    }
+  }
+
+
+  @Signal
+  public void signal() {
+    trigger.trigger();
+  }
+}
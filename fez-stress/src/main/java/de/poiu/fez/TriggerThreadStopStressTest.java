@@ -0,0 +1,61 @@
+package de.poiu.fez;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.Z_Result;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+
+/**
+ * Checks that {@link TriggerThread#stop()} always ends the thread, even if it races with a
+ * concurrent {@link TriggerThread#trigger()}.
+ * <p>
+ * If the trigger event of the other actor occupies the trigger, the trigger event of
+ * <code>stop()</code> is lost. The thread then only terminates if it sees the stop request
+ * after processing the other trigger event.
+ *
+ * @author mherrn
+ */
+@JCStressTest
+@Outcome(id = "false", expect = ACCEPTABLE, desc = "The thread has ended.")
+@Outcome(id = "true", expect = FORBIDDEN, desc = "The thread is still alive after stop().")
+@State
+public class TriggerThreadStopStressTest {
+
+  private final TriggerThread triggerThread= new TriggerThread(new Runnable() {
+    @Override
+    public void run() {
+      // nothing to do
+    }
+  }, "TriggerThreadStopStressTest", true);
+  private final Thread thread= triggerThread.getThread();
+
+
+  @Actor
+  public void stopper() {
+    triggerThread.stop();
+  }
+
+
+  @Actor
+  public void triggerer() {
+    triggerThread.trigger();
+  }
+
+
+  @Arbiter
+  public void arbiter(final Z_Result r) {
+    try {
+      thread.join(TimeUnit.SECONDS.toMillis(1));
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    r.r1= thread.isAlive();
+  }
+}
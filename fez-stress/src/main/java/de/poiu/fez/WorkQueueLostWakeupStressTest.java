@@ -0,0 +1,44 @@
+package de.poiu.fez;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Mode;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.Signal;
+import org.openjdk.jcstress.annotations.State;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+
+/**
+ * Checks that the consumer waiting in {@link WorkQueue#take()} is always woken up by a
+ * concurrent {@link WorkQueue#offer(java.lang.Object)}, regardless of whether the element is put
+ * before or after the consumer started waiting.
+ *
+ * @author mherrn
+ */
+@JCStressTest(Mode.Termination)
+@Outcome(id = "TERMINATED", expect = ACCEPTABLE, desc = "The waiting thread was woken up.")
+@Outcome(id = "STALE", expect = FORBIDDEN, desc = "Lost wakeup. The waiting thread was not woken up.")
+@State
+public class WorkQueueLostWakeupStressTest {
+
+  private final WorkQueue<Object> queue= new WorkQueue<>(1, WorkQueue.OverflowPolicy.REJECT);
+
+
+  @Actor
+  public void waiter() {
+    try {
+      queue.take();
+    } catch (InterruptedException ex) {
+      // jcstress interrupts stale actors. The outcome is STALE then anyway.
+    }
+  }
+
+
+  @Signal
+  public void signal() {
+    queue.offer(Boolean.TRUE);
+  }
+}
@@ -0,0 +1,670 @@
+package de.poiu.fez;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * A single-threaded event loop that executes submitted tasks, resettable timers and trigger
+ * subscriptions all on one thread.
+ * <p>
+ * This is an alternative to using one thread per {@link ResettableTimer} or {@link TriggerThread}.
+ * All work is multiplexed onto the single thread of this loop:
+ * <ul>
+ *   <li>Tasks are submitted via {@link #execute(java.lang.Runnable)} from any thread.</li>
+ *   <li>Timers are created via {@link #schedule(java.lang.Runnable, long, java.util.concurrent.TimeUnit)},
+ *       {@link #scheduleAtFixedRate(java.lang.Runnable, long, long, java.util.concurrent.TimeUnit)} or
+ *       {@link #scheduleWithFixedDelay(java.lang.Runnable, long, long, java.util.concurrent.TimeUnit)}
+ *       and can be {@link Timer#reset() reset} and {@link Timer#cancel() cancelled} from any thread.</li>
+ *   <li>Trigger subscriptions are created via {@link #subscribe(java.lang.Runnable)}. Triggering a
+ *       subscription executes its listener on this loop. Multiple triggers that occur before the
+ *       listener was executed are coalesced into a single execution.</li>
+ * </ul>
+ * <p>
+ * Since everything runs on the same thread, tasks, timers and listeners must not block. Otherwise
+ * all other work on this loop is delayed.
+ * <p>
+ * The thread of this loop is started lazily on the first submission of work. To distribute work
+ * over several loops use an {@link EventLoopGroup}. Interrupting the thread of this loop has no
+ * effect. The interrupt status is cleared after each task. Use {@link #shutdown()} to stop the loop.
+ *
+ * @author mherrn
+ */
+public class EventLoop implements Executor {
+  private static final FezLogger LOGGER= FezLogger.getLogger(EventLoop.class);
+
+  private static enum State {
+    NOT_STARTED,
+    RUNNING,
+    SHUTTING_DOWN,
+    TERMINATED,
+    ;
+  }
+
+  /** The maximum number of queued tasks to execute before checking the timers again. */
+  private static final int MAX_TASKS_PER_ITERATION= 1024;
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Attributes
+
+  private final String name;
+  private final NamedThreadFactory threadFactory;
+
+  /** The tasks submitted to this loop. Written by any thread, only read by the loop thread. */
+  private final Queue<Runnable> taskQueue= new ConcurrentLinkedQueue<>();
+  private final AtomicReference<State> state= new AtomicReference<>(State.NOT_STARTED);
+  /**
+   * The number of calls to {@link #execute(java.lang.Runnable)} that passed the state check, but
+   * have not yet added their task. The loop waits for them before terminating.
+   */
+  private final AtomicInteger pendingSubmissions= new AtomicInteger();
+  private final CountDownLatch terminationLatch= new CountDownLatch(1);
+  private volatile Thread thread;
+  /** Whether the loop thread is (about to be) parked and needs to be woken up on new tasks. */
+  private volatile boolean sleeping= false;
+
+  /** Binary min-heap of the currently scheduled timers. Only accessed by the loop thread. */
+  private Timer[] timerHeap= new Timer[16];
+  private int timerCount= 0;
+  /** Sequence number to keep timers with the same deadline in FIFO order. Only accessed by the loop thread. */
+  private long timerSequence= 0;
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Constructors
+
+  /**
+   * Creates a new EventLoop. The thread of this loop will be a daemon thread named after
+   * the given name.
+   *
+   * @param name the name of this EventLoop
+   */
+  public EventLoop(final String name) {
+    this.name= Require.nonNull(name, "name may not be null");
+    this.threadFactory= new NamedThreadFactory("EventLoop-"+name);
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Methods
+
+  /**
+   * Executes the given task on the thread of this loop.
+   *
+   * @param task the task to execute
+   * @throws RejectedExecutionException if this loop was already shut down
+   */
+  @Override
+  public void execute(final Runnable task) {
+    Require.nonNull(task, "task may not be null");
+    this.startIfNecessary();
+
+    // announce the submission before checking the state. If the check passes, the loop does not
+    // terminate before the task was added and will therefore execute it.
+    this.pendingSubmissions.incrementAndGet();
+    try {
+      if (this.state.get().compareTo(State.SHUTTING_DOWN) >= 0) {
+        throw new RejectedExecutionException(this+" is already shut down");
+      }
+      this.taskQueue.offer(task);
+    } finally {
+      this.pendingSubmissions.decrementAndGet();
+    }
+    this.wakeup();
+  }
+
+
+  /**
+   * Creates and starts a one-shot timer that executes the given task after the given delay.
+   * The returned timer can be {@link Timer#reset() reset} to delay the execution again.
+   *
+   * @param task the task to execute
+   * @param delay the delay after which to execute the task
+   * @param timeUnit the time unit of the delay
+   * @return the started timer
+   * @see ResettableTimer#createSchedule(long, java.util.concurrent.TimeUnit, java.lang.Runnable)
+   */
+  public Timer schedule(final Runnable task, final long delay, final TimeUnit timeUnit) {
+    return new Timer(task, timeUnit.toNanos(delay), 0).reset();
+  }
+
+
+  /**
+   * Creates and starts a periodic timer that executes the given task first after the given
+   * initial delay and subsequently with the given period.
+   *
+   * @param task the task to execute
+   * @param initialDelay the delay before the first execution
+   * @param period the period between successive executions
+   * @param timeUnit the time unit of the initial delay and the period
+   * @return the started timer
+   * @see ResettableTimer#createScheduleAtFixedRate(long, long, java.util.concurrent.TimeUnit, java.lang.Runnable)
+   */
+  public Timer scheduleAtFixedRate(final Runnable task, final long initialDelay, final long period, final TimeUnit timeUnit) {
+    Require.isTrue(period > 0, "period must be positive");
+    return new Timer(task, timeUnit.toNanos(initialDelay), timeUnit.toNanos(period)).reset();
+  }
+
+
+  /**
+   * Creates and starts a periodic timer that executes the given task first after the given
+   * initial delay and subsequently with the given delay between the end of one execution and
+   * the start of the next.
+   *
+   * @param task the task to execute
+   * @param initialDelay the delay before the first execution
+   * @param delay the delay between the end of one execution and the start of the next
+   * @param timeUnit the time unit of the initial delay and the delay
+   * @return the started timer
+   * @see ResettableTimer#createScheduleWithFixedDelay(long, long, java.util.concurrent.TimeUnit, java.lang.Runnable)
+   */
+  public Timer scheduleWithFixedDelay(final Runnable task, final long initialDelay, final long delay, final TimeUnit timeUnit) {
+    Require.isTrue(delay > 0, "delay must be positive");
+    return new Timer(task, timeUnit.toNanos(initialDelay), -timeUnit.toNanos(delay)).reset();
+  }
+
+
+  /**
+   * Subscribes the given listener to a new trigger on this loop.
+   * <p>
+   * Each call of {@link Subscription#trigger()} leads to the execution of the listener on this
+   * loop. Triggers that occur while an execution is still pending are coalesced.
+   * <p>
+   * This is the equivalent of a {@link TriggerThread}, but without a dedicated thread.
+   *
+   * @param listener the listener to execute on each trigger
+   * @return the subscription to trigger
+   */
+  public Subscription subscribe(final Runnable listener) {
+    return new Subscription(listener);
+  }
+
+
+  /**
+   * Returns whether the current thread is the thread of this loop.
+   *
+   * @return whether the current thread is the thread of this loop
+   */
+  public boolean inEventLoop() {
+    return Thread.currentThread() == this.thread;
+  }
+
+
+  /**
+   * Initiates an orderly shutdown of this loop. Already submitted tasks are still executed,
+   * but no new tasks are accepted. Pending timers are discarded.
+   */
+  public void shutdown() {
+    if (this.state.compareAndSet(State.NOT_STARTED, State.TERMINATED)) {
+      this.terminationLatch.countDown();
+      return;
+    }
+
+    if (this.state.compareAndSet(State.RUNNING, State.SHUTTING_DOWN)) {
+      LOGGER.log(LogLevel.DEBUG, "[{0}] Shutdown requested.", this);
+      final Thread t= this.thread;
+      if (t != null) {
+        LockSupport.unpark(t);
+      }
+    }
+  }
+
+
+  /**
+   * Returns whether this loop was shut down.
+   *
+   * @return whether this loop was shut down
+   */
+  public boolean isShutdown() {
+    return this.state.get().compareTo(State.SHUTTING_DOWN) >= 0;
+  }
+
+
+  /**
+   * Returns whether this loop was shut down and its thread has ended.
+   *
+   * @return whether this loop has terminated
+   */
+  public boolean isTerminated() {
+    return this.state.get() == State.TERMINATED;
+  }
+
+
+  /**
+   * Blocks until this loop has terminated after a shutdown request, or the timeout occurs,
+   * or the current thread is interrupted, whichever happens first.
+   *
+   * @param timeout the maximum time to wait
+   * @param timeUnit the time unit of the timeout
+   * @return true if this loop terminated, false if the timeout elapsed before termination
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public boolean awaitTermination(final long timeout, final TimeUnit timeUnit) throws InterruptedException {
+    return this.terminationLatch.await(timeout, timeUnit);
+  }
+
+
+  private void startIfNecessary() {
+    if (this.state.get() == State.NOT_STARTED && this.state.compareAndSet(State.NOT_STARTED, State.RUNNING)) {
+      final Thread t= this.threadFactory.newThread(new Runnable() {
+        @Override
+        public void run() {
+          runLoop();
+        }
+      });
+      this.thread= t;
+      t.start();
+    }
+  }
+
+
+  /**
+   * Wakes up the loop thread if it is waiting for work.
+   */
+  private void wakeup() {
+    // The loop thread sets 'sleeping' before re-checking the task queue, and we check 'sleeping'
+    // after adding to the task queue. Therefore at least one side sees the other's write.
+    if (this.sleeping && !this.inEventLoop()) {
+      final Thread t= this.thread;
+      if (t != null) {
+        LockSupport.unpark(t);
+      }
+    }
+  }
+
+
+  /**
+   * Executes the given task directly if called from the loop thread. Otherwise submits
+   * it to this loop.
+   */
+  private void runInLoop(final Runnable task) {
+    if (this.inEventLoop()) {
+      task.run();
+    } else {
+      this.execute(task);
+    }
+  }
+
+
+  private void runLoop() {
+    LOGGER.log(LogLevel.DEBUG, "[{0}] Started.", this);
+    try {
+      while (true) {
+        this.runTasks();
+        this.runExpiredTimers(System.nanoTime());
+
+        if (this.state.get() == State.SHUTTING_DOWN) {
+          // execute everything that was submitted before the shutdown, including the tasks of
+          // submissions that passed the state check, but have not yet added their task
+          while (!this.taskQueue.isEmpty() || this.pendingSubmissions.get() > 0) {
+            if (this.taskQueue.isEmpty()) {
+              Thread.yield();
+            }
+            this.runTasks();
+          }
+          break;
+        }
+
+        final long waitNanos= this.timerCount == 0
+          ? Long.MAX_VALUE
+          : this.timerHeap[0].deadline - System.nanoTime();
+        if (waitNanos > 0) {
+          // an interrupt would let parkNanos return immediately and the loop would spin. Interrupts
+          // of the loop thread are therefore ignored; use shutdown() to stop the loop.
+          Thread.interrupted();
+          this.sleeping= true;
+          if (this.taskQueue.isEmpty() && this.state.get() == State.RUNNING) {
+            LockSupport.parkNanos(this, waitNanos);
+          }
+          this.sleeping= false;
+        }
+      }
+    } finally {
+      for (int i= 0; i < this.timerCount; i++) {
+        this.timerHeap[i].scheduled= false;
+      }
+      Arrays.fill(this.timerHeap, 0, this.timerCount, null);
+      this.timerCount= 0;
+      this.state.set(State.TERMINATED);
+      this.terminationLatch.countDown();
+      LOGGER.log(LogLevel.DEBUG, "[{0}] Terminated.", this);
+    }
+  }
+
+
+  private void runTasks() {
+    for (int i= 0; i < MAX_TASKS_PER_ITERATION; i++) {
+      final Runnable task= this.taskQueue.poll();
+      if (task == null) {
+        return;
+      }
+      safeRun(task);
+    }
+  }
+
+
+  private void runExpiredTimers(final long now) {
+    while (this.timerCount > 0 && this.timerHeap[0].deadline - now <= 0) {
+      final Timer timer= this.timerHeap[0];
+      this.removeTimer(timer);
+      timer.fire();
+    }
+  }
+
+
+  private static boolean safeRun(final Runnable task) {
+    try {
+      task.run();
+      return true;
+    } catch (Throwable t) {
+      LOGGER.log(LogLevel.WARN, () -> "Task "+task+" resulted in Exception", t);
+      return false;
+    } finally {
+      // don't let an interrupt of one task leak into the following tasks
+      Thread.interrupted();
+    }
+  }
+
+
+  private void addTimer(final Timer timer) {
+    if (this.timerCount == this.timerHeap.length) {
+      this.timerHeap= Arrays.copyOf(this.timerHeap, this.timerCount * 2);
+    }
+    timer.sequence= this.timerSequence++;
+    this.siftUp(this.timerCount++, timer);
+  }
+
+
+  private void removeTimer(final Timer timer) {
+    final int index= timer.heapIndex;
+    if (index < 0) {
+      return;
+    }
+
+    final Timer last= this.timerHeap[--this.timerCount];
+    this.timerHeap[this.timerCount]= null;
+    timer.heapIndex= -1;
+    if (last != timer) {
+      this.siftDown(index, last);
+      if (this.timerHeap[index] == last) {
+        this.siftUp(index, last);
+      }
+    }
+  }
+
+
+  private void siftUp(int index, final Timer timer) {
+    while (index > 0) {
+      final int parentIndex= (index - 1) >>> 1;
+      final Timer parent= this.timerHeap[parentIndex];
+      if (!timer.isBefore(parent)) {
+        break;
+      }
+      this.timerHeap[index]= parent;
+      parent.heapIndex= index;
+      index= parentIndex;
+    }
+    this.timerHeap[index]= timer;
+    timer.heapIndex= index;
+  }
+
+
+  private void siftDown(int index, final Timer timer) {
+    final int half= this.timerCount >>> 1;
+    while (index < half) {
+      int childIndex= (index << 1) + 1;
+      Timer child= this.timerHeap[childIndex];
+      final int rightIndex= childIndex + 1;
+      if (rightIndex < this.timerCount && this.timerHeap[rightIndex].isBefore(child)) {
+        childIndex= rightIndex;
+        child= this.timerHeap[childIndex];
+      }
+      if (!child.isBefore(timer)) {
+        break;
+      }
+      this.timerHeap[index]= child;
+      child.heapIndex= index;
+      index= childIndex;
+    }
+    this.timerHeap[index]= timer;
+    timer.heapIndex= index;
+  }
+
+
+  @Override
+  public String toString() {
+    return "EventLoop-"+this.name;
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Inner classes
+
+  /**
+   * A resettable timer running on an {@link EventLoop}.
+   * <p>
+   * All methods of this class may be called from any thread. If they are called from another
+   * thread than the loop thread, the actual change is applied asynchronously on the loop thread.
+   */
+  public final class Timer {
+    private final Runnable task;
+    private final long delay;
+    /** 0 for one-shot timers, positive for fixed-rate timers, negative for fixed-delay timers. */
+    private final long period;
+
+    // The following fields are only accessed by the loop thread
+    private long deadline;
+    private long sequence;
+    private int heapIndex= -1;
+    /** Incremented on each reset and cancel to detect those calls from within the task itself. */
+    private int generation= 0;
+
+    private volatile boolean scheduled= false;
+
+
+    private Timer(final Runnable task, final long delay, final long period) {
+      this.task= Require.nonNull(task, "task may not be null");
+      this.delay= delay;
+      this.period= period;
+    }
+
+
+    /**
+     * Resets this timer. The next execution will happen after the initial delay this timer
+     * was created with, measured from now. This can also be used to restart a cancelled timer.
+     *
+     * @return this Timer
+     * @throws RejectedExecutionException if the loop was already shut down
+     */
+    public Timer reset() {
+      return this.reset(this.delay, TimeUnit.NANOSECONDS);
+    }
+
+
+    /**
+     * Resets this timer. The next execution will happen after the given delay, measured from now.
+     * This can also be used to restart a cancelled timer.
+     *
+     * @param delay the delay until the next execution
+     * @param timeUnit the time unit of the delay
+     * @return this Timer
+     * @throws RejectedExecutionException if the loop was already shut down
+     */
+    public Timer reset(final long delay, final TimeUnit timeUnit) {
+      final long delayNanos= timeUnit.toNanos(delay);
+      this.scheduled= true;
+      try {
+        runInLoop(new Runnable() {
+          @Override
+          public void run() {
+            generation++;
+            removeTimer(Timer.this);
+            deadline= System.nanoTime() + delayNanos;
+            addTimer(Timer.this);
+            scheduled= true;
+          }
+        });
+      } catch (RejectedExecutionException ex) {
+        this.scheduled= false;
+        throw ex;
+      }
+      return this;
+    }
+
+
+    /**
+     * Cancels this timer. A currently running execution is not interrupted.
+     *
+     * @return this Timer
+     */
+    public Timer cancel() {
+      this.scheduled= false;
+      if (isShutdown()) {
+        return this;
+      }
+      runInLoop(new Runnable() {
+        @Override
+        public void run() {
+          generation++;
+          removeTimer(Timer.this);
+          scheduled= false;
+        }
+      });
+      return this;
+    }
+
+
+    /**
+     * Returns whether this timer is scheduled for a future execution.
+     * <p>
+     * The result reflects calls to {@link #reset()} and {@link #cancel()} immediately,
+     * even if they were not yet applied by the loop thread.
+     *
+     * @return whether this timer is scheduled
+     */
+    public boolean isScheduled() {
+      return this.scheduled;
+    }
+
+
+    /**
+     * Executes the task of this timer and reschedules it if it is periodic.
+     * Must only be called by the loop thread after removing this timer from the heap.
+     */
+    private void fire() {
+      final int generationBeforeRun= this.generation;
+      if (this.period == 0) {
+        this.scheduled= false;
+      }
+
+      final boolean success= safeRun(this.task);
+
+      // the task may have reset or cancelled this timer itself
+      if (this.generation != generationBeforeRun || this.period == 0) {
+        return;
+      }
+
+      if (!success) {
+        // like ScheduledExecutorService: suppress subsequent executions after an exception
+        this.scheduled= false;
+        return;
+      }
+
+      if (this.period > 0) {
+        this.deadline+= this.period;
+      } else {
+        this.deadline= System.nanoTime() - this.period;
+      }
+      addTimer(this);
+    }
+
+
+    private boolean isBefore(final Timer other) {
+      final long diff= this.deadline - other.deadline;
+      return diff < 0 || (diff == 0 && this.sequence < other.sequence);
+    }
+
+
+    @Override
+    public String toString() {
+      return EventLoop.this+".Timer@"+Integer.toHexString(System.identityHashCode(this));
+    }
+  }
+
+
+  /**
+   * A trigger subscription on an {@link EventLoop}.
+   * <p>
+   * Calling {@link #trigger()} executes the listener of this subscription on the loop thread.
+   * If the subscription is triggered several times before the listener gets executed, the
+   * listener is only executed once.
+   */
+  public final class Subscription {
+    private final Runnable listener;
+    private final AtomicBoolean pending= new AtomicBoolean(false);
+    private volatile boolean cancelled= false;
+
+    private final Runnable dispatcher= new Runnable() {
+      @Override
+      public void run() {
+        pending.set(false);
+        if (!cancelled) {
+          safeRun(listener);
+        }
+      }
+    };
+
+
+    private Subscription(final Runnable listener) {
+      this.listener= Require.nonNull(listener, "listener may not be null");
+    }
+
+
+    /**
+     * Triggers this subscription.
+     *
+     * @throws RejectedExecutionException if the loop was already shut down
+     */
+    public void trigger() {
+      if (this.cancelled) {
+        return;
+      }
+      if (this.pending.compareAndSet(false, true)) {
+        try {
+          execute(this.dispatcher);
+        } catch (RejectedExecutionException ex) {
+          this.pending.set(false);
+          throw ex;
+        }
+      }
+    }
+
+
+    /**
+     * Cancels this subscription. Subsequent triggers are ignored.
+     */
+    public void cancel() {
+      this.cancelled= true;
+    }
+
+
+    @Override
+    public String toString() {
+      return EventLoop.this+".Subscription@"+Integer.toHexString(System.identityHashCode(this));
+    }
+  }
+}
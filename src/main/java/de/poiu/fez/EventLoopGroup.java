@@ -0,0 +1,124 @@
+package de.poiu.fez;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * A fixed group of {@link EventLoop}s to distribute work over several threads.
+ * <p>
+ * Work can either be distributed round-robin via {@link #next()} or pinned to a specific loop
+ * via {@link #forKey(java.lang.Object)}. The latter guarantees that all work for the same key
+ * is executed on the same thread and therefore needs no further synchronization.
+ *
+ * @author mherrn
+ */
+public class EventLoopGroup {
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Attributes
+
+  private final EventLoop[] loops;
+  private final AtomicInteger nextIndex= new AtomicInteger();
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Constructors
+
+  /**
+   * Creates a new EventLoopGroup with the given number of loops.
+   * The loops are named after the given name plus their index in this group.
+   *
+   * @param name the name of this group
+   * @param numberOfLoops the number of loops in this group
+   */
+  public EventLoopGroup(final String name, final int numberOfLoops) {
+    Require.nonNull(name, "name may not be null");
+    Require.isTrue(numberOfLoops > 0, "numberOfLoops must be positive");
+
+    this.loops= new EventLoop[numberOfLoops];
+    for (int i= 0; i < numberOfLoops; i++) {
+      this.loops[i]= new EventLoop(name+"-"+i);
+    }
+  }
+
+
+  /**
+   * Creates a new EventLoopGroup with one loop per available processor.
+   *
+   * @param name the name of this group
+   */
+  public EventLoopGroup(final String name) {
+    this(name, Runtime.getRuntime().availableProcessors());
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Methods
+
+  /**
+   * Returns the next loop of this group in round-robin order.
+   *
+   * @return the next loop
+   */
+  public EventLoop next() {
+    return this.loops[Math.floorMod(this.nextIndex.getAndIncrement(), this.loops.length)];
+  }
+
+
+  /**
+   * Returns the loop for the given key. The same key always results in the same loop.
+   *
+   * @param key the key to return the loop for
+   * @return the loop for the given key
+   */
+  public EventLoop forKey(final Object key) {
+    final int h= key.hashCode();
+    return this.loops[Math.floorMod(h ^ (h >>> 16), this.loops.length)];
+  }
+
+
+  /**
+   * Returns the number of loops in this group.
+   *
+   * @return the number of loops in this group
+   */
+  public int size() {
+    return this.loops.length;
+  }
+
+
+  /**
+   * Initiates an orderly shutdown of all loops in this group.
+   *
+   * @see EventLoop#shutdown()
+   */
+  public void shutdown() {
+    for (final EventLoop loop : this.loops) {
+      loop.shutdown();
+    }
+  }
+
+
+  /**
+   * Blocks until all loops of this group have terminated after a shutdown request, or the
+   * timeout occurs, or the current thread is interrupted, whichever happens first.
+   *
+   * @param timeout the maximum time to wait
+   * @param timeUnit the time unit of the timeout
+   * @return true if all loops terminated, false if the timeout elapsed before termination
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public boolean awaitTermination(final long timeout, final TimeUnit timeUnit) throws InterruptedException {
+    final long deadline= System.nanoTime() + timeUnit.toNanos(timeout);
+    for (final EventLoop loop : this.loops) {
+      if (!loop.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
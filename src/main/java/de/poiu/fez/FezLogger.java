@@ -0,0 +1,136 @@
+package de.poiu.fez;
+
+import java.text.MessageFormat;
+import java.util.function.Supplier;
+
+
+/**
+ * The internal logger of fez.
+ * <p>
+ * Creating a logger is cheap and does not load any logging framework. All log messages are
+ * delegated to the {@link LogBackend} configured via {@link FezLogging}. If logging is disabled or
+ * the level is not enabled in the backend, the message is neither formatted nor are its parameters
+ * converted to strings.
+ * <p>
+ * Messages with parameters use the placeholders of {@link MessageFormat} (<code>{0}</code>,
+ * <code>{1}</code>, ...). There are fixed-arity methods for up to three parameters to avoid the
+ * allocation of a varargs array. For messages that are expensive to build use
+ * {@link #log(de.poiu.fez.LogLevel, java.util.function.Supplier)}.
+ *
+ * @author mherrn
+ */
+final class FezLogger {
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Attributes
+
+  private final String name;
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Constructors
+
+  private FezLogger(final String name) {
+    this.name= name;
+  }
+
+
+  /**
+   * Returns a logger for the given class.
+   *
+   * @param clazz the class to log for
+   * @return the logger
+   */
+  static FezLogger getLogger(final Class<?> clazz) {
+    return new FezLogger(clazz.getName());
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Methods
+
+  /**
+   * Returns whether messages of the given level are logged.
+   *
+   * @param level the level to check
+   * @return whether messages of the given level are logged
+   */
+  boolean isEnabled(final LogLevel level) {
+    final LogBackend backend= FezLogging.getBackend();
+    return backend != null && backend.isEnabled(this.name, level);
+  }
+
+
+  void log(final LogLevel level, final String message) {
+    final LogBackend backend= FezLogging.getBackend();
+    if (backend != null && backend.isEnabled(this.name, level)) {
+      backend.log(this.name, level, message, null);
+    }
+  }
+
+
+  void log(final LogLevel level, final String message, final Throwable throwable) {
+    final LogBackend backend= FezLogging.getBackend();
+    if (backend != null && backend.isEnabled(this.name, level)) {
+      backend.log(this.name, level, message, throwable);
+    }
+  }
+
+
+  void log(final LogLevel level, final String message, final Object param1) {
+    final LogBackend backend= FezLogging.getBackend();
+    if (backend != null && backend.isEnabled(this.name, level)) {
+      backend.log(this.name, level, MessageFormat.format(message, param1), null);
+    }
+  }
+
+
+  void log(final LogLevel level, final String message, final Object param1, final Object param2) {
+    final LogBackend backend= FezLogging.getBackend();
+    if (backend != null && backend.isEnabled(this.name, level)) {
+      backend.log(this.name, level, MessageFormat.format(message, param1, param2), null);
+    }
+  }
+
+
+  void log(final LogLevel level, final String message, final Object param1, final Object param2, final Object param3) {
+    final LogBackend backend= FezLogging.getBackend();
+    if (backend != null && backend.isEnabled(this.name, level)) {
+      backend.log(this.name, level, MessageFormat.format(message, param1, param2, param3), null);
+    }
+  }
+
+
+  /**
+   * Logs the message provided by the given supplier. The supplier is only called if the level is
+   * enabled.
+   *
+   * @param level the level of the message
+   * @param message the supplier of the message
+   */
+  void log(final LogLevel level, final Supplier<String> message) {
+    final LogBackend backend= FezLogging.getBackend();
+    if (backend != null && backend.isEnabled(this.name, level)) {
+      backend.log(this.name, level, message.get(), null);
+    }
+  }
+
+
+  /**
+   * Logs the message provided by the given supplier. The supplier is only called if the level is
+   * enabled.
+   *
+   * @param level the level of the message
+   * @param message the supplier of the message
+   * @param throwable the exception to log
+   */
+  void log(final LogLevel level, final Supplier<String> message, final Throwable throwable) {
+    final LogBackend backend= FezLogging.getBackend();
+    if (backend != null && backend.isEnabled(this.name, level)) {
+      backend.log(this.name, level, message.get(), throwable);
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package de.poiu.fez;
+
+
+/**
+ * Configuration of the logging of fez.
+ * <p>
+ * Logging is disabled by default. In that case no logging framework is loaded and all log
+ * statements of fez are reduced to a single check of a volatile field. Be aware that this also
+ * suppresses warnings, e.g. about exceptions thrown by the task of a {@link ResettableTimer}.
+ * Fez 1.1.0 and earlier logged them via <code>java.util.logging</code>. To restore this
+ * behaviour call
+ * <pre>
+ * FezLogging.useJavaUtilLogging();
+ * </pre>
+ * on startup.
+ * <p>
+ * Logging can be enabled either
+ * <ul>
+ *   <li>by calling {@link #useJavaUtilLogging()} to log via <code>java.util.logging</code>,</li>
+ *   <li>by calling {@link #setBackend(de.poiu.fez.LogBackend)} to log via any other logging
+ *       framework or</li>
+ *   <li>by setting the system property <code>de.poiu.fez.logging</code> to <code>jul</code>
+ *       before the first fez class is loaded.</li>
+ * </ul>
+ *
+ * @author mherrn
+ */
+public final class FezLogging {
+
+  /** The name of the system property to enable the logging via <code>java.util.logging</code>. */
+  public static final String SYSTEM_PROPERTY= "de.poiu.fez.logging";
+
+  /** The current backend or <code>null</code> if logging is disabled. */
+  private static volatile LogBackend backend= "jul".equalsIgnoreCase(System.getProperty(SYSTEM_PROPERTY))
+                                                ? new JulBackend()
+                                                : null;
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Constructors
+
+  private FezLogging() {
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Methods
+
+  /**
+   * Routes all log messages of fez to the given backend.
+   *
+   * @param backend the backend to log to
+   */
+  public static void setBackend(final LogBackend backend) {
+    FezLogging.backend= Require.nonNull(backend, "backend may not be null");
+  }
+
+
+  /**
+   * Routes all log messages of fez to <code>java.util.logging</code>.
+   * The loggers are named after the fully qualified name of the logging class.
+   */
+  public static void useJavaUtilLogging() {
+    FezLogging.backend= new JulBackend();
+  }
+
+
+  /**
+   * Disables all log messages of fez.
+   */
+  public static void disable() {
+    FezLogging.backend= null;
+  }
+
+
+  /**
+   * Returns whether logging is enabled.
+   *
+   * @return whether a backend is set
+   */
+  public static boolean isEnabled() {
+    return backend != null;
+  }
+
+
+  /**
+   * Returns the current backend.
+   *
+   * @return the current backend or <code>null</code> if logging is disabled
+   */
+  static LogBackend getBackend() {
+    return backend;
+  }
+}
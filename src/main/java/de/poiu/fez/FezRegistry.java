@@ -0,0 +1,313 @@
+package de.poiu.fez;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+
+/**
+ * An opt-in registry of the live {@link ResettableTimer}s, {@link Trigger}s and
+ * {@link NamedThreadFactory}s for diagnostic purposes.
+ * <p>
+ * The registry is disabled by default. After calling {@link #enable()} all instances of the above
+ * classes that are created afterwards are tracked by this registry. Instances created before
+ * enabling the registry are not tracked.
+ * <p>
+ * The instances are only weakly referenced and are therefore removed from the registry when they
+ * are garbage collected.
+ * <p>
+ * When enabled, the registry is exposed as an MXBean with the name
+ * <code>de.poiu.fez:type=FezRegistry</code> in the platform MBean server.
+ *
+ * @author mherrn
+ */
+public final class FezRegistry implements FezRegistryMXBean {
+  private static final FezLogger LOGGER= FezLogger.getLogger(FezRegistry.class);
+
+  /** The name of the MXBean of this registry. */
+  public static final String OBJECT_NAME= "de.poiu.fez:type=FezRegistry";
+
+  private static final FezRegistry INSTANCE= new FezRegistry();
+
+  private static volatile boolean enabled= false;
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Attributes
+
+  private final Map<ResettableTimer, Boolean> timers= Collections.synchronizedMap(new WeakHashMap<ResettableTimer, Boolean>());
+  private final Map<Trigger, Boolean> triggers= Collections.synchronizedMap(new WeakHashMap<Trigger, Boolean>());
+  private final Map<NamedThreadFactory, Boolean> threadFactories= Collections.synchronizedMap(new WeakHashMap<NamedThreadFactory, Boolean>());
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Constructors
+
+  private FezRegistry() {
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Methods
+
+  /**
+   * Enables this registry and registers its MXBean in the platform MBean server.
+   * Calling this method again has no effect.
+   */
+  public static synchronized void enable() {
+    if (enabled) {
+      return;
+    }
+
+    MXBeanRegistration.register();
+    enabled= true;
+  }
+
+
+  /**
+   * Disables this registry, unregisters its MXBean and forgets all tracked instances.
+   */
+  public static synchronized void disable() {
+    if (!enabled) {
+      return;
+    }
+    enabled= false;
+
+    MXBeanRegistration.unregister();
+
+    INSTANCE.timers.clear();
+    INSTANCE.triggers.clear();
+    INSTANCE.threadFactories.clear();
+  }
+
+
+  /**
+   * Returns whether this registry is enabled.
+   *
+   * @return whether this registry is enabled
+   */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+
+  /**
+   * Returns the registry instance. This is the object that is registered as MXBean.
+   *
+   * @return the registry instance
+   */
+  public static FezRegistry getInstance() {
+    return INSTANCE;
+  }
+
+
+  static void register(final ResettableTimer timer) {
+    if (enabled) {
+      INSTANCE.timers.put(timer, Boolean.TRUE);
+    }
+  }
+
+
+  static void register(final Trigger trigger) {
+    if (enabled) {
+      INSTANCE.triggers.put(trigger, Boolean.TRUE);
+    }
+  }
+
+
+  static void register(final NamedThreadFactory threadFactory) {
+    if (enabled) {
+      INSTANCE.threadFactories.put(threadFactory, Boolean.TRUE);
+    }
+  }
+
+
+  @Override
+  public List<TimerInfo> getTimers() {
+    final List<TimerInfo> result= new ArrayList<>();
+    for (final ResettableTimer timer : snapshot(this.timers)) {
+      result.add(new TimerInfo(timer));
+    }
+    return result;
+  }
+
+
+  @Override
+  public List<TriggerInfo> getTriggers() {
+    final List<TriggerInfo> result= new ArrayList<>();
+    for (final Trigger trigger : snapshot(this.triggers)) {
+      result.add(new TriggerInfo(trigger));
+    }
+    return result;
+  }
+
+
+  @Override
+  public Map<String, Long> getCreatedThreadsPerFactoryPrefix() {
+    final Map<String, Long> result= new TreeMap<>();
+    for (final NamedThreadFactory threadFactory : snapshot(this.threadFactories)) {
+      final Long count= result.get(threadFactory.getNamePrefix());
+      result.put(threadFactory.getNamePrefix(), (count != null ? count : 0L) + threadFactory.getCreatedThreadCount());
+    }
+    return result;
+  }
+
+
+  @Override
+  public int getTimerCount() {
+    return this.timers.size();
+  }
+
+
+  @Override
+  public int getTriggerCount() {
+    return this.triggers.size();
+  }
+
+
+  private static <T> List<T> snapshot(final Map<T, Boolean> map) {
+    synchronized(map) {
+      return new ArrayList<>(map.keySet());
+    }
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Inner classes
+
+  /**
+   * The registration of the MXBean in the platform MBean server.
+   * <p>
+   * This is a separate class to avoid loading any JMX classes as long as the registry is not
+   * enabled, since {@link FezRegistry} itself is loaded by each constructor of the tracked classes.
+   */
+  private static final class MXBeanRegistration {
+
+    private static void register() {
+      try {
+        final MBeanServer mBeanServer= ManagementFactory.getPlatformMBeanServer();
+        final ObjectName objectName= new ObjectName(OBJECT_NAME);
+        if (!mBeanServer.isRegistered(objectName)) {
+          mBeanServer.registerMBean(INSTANCE, objectName);
+        }
+      } catch (JMException ex) {
+        LOGGER.log(LogLevel.WARN, "Cannot register MXBean "+OBJECT_NAME, ex);
+      }
+    }
+
+
+    private static void unregister() {
+      try {
+        final MBeanServer mBeanServer= ManagementFactory.getPlatformMBeanServer();
+        final ObjectName objectName= new ObjectName(OBJECT_NAME);
+        if (mBeanServer.isRegistered(objectName)) {
+          mBeanServer.unregisterMBean(objectName);
+        }
+      } catch (JMException ex) {
+        LOGGER.log(LogLevel.WARN, "Cannot unregister MXBean "+OBJECT_NAME, ex);
+      }
+    }
+  }
+
+
+  /**
+   * The state of a {@link ResettableTimer} as exposed by the {@link FezRegistryMXBean}.
+   */
+  public static final class TimerInfo {
+    private final String name;
+    private final String scheduleType;
+    private final boolean scheduled;
+    private final long nextExecutionDelayMillis;
+    private final long resetCount;
+    private final long executionCount;
+    private final long lastRunDurationMicros;
+    private final long overrunCount;
+
+    private TimerInfo(final ResettableTimer timer) {
+      this.name= timer.toString();
+      this.scheduleType= timer.getScheduleType().name();
+      this.scheduled= timer.isScheduled();
+      this.nextExecutionDelayMillis= timer.getDelay(TimeUnit.MILLISECONDS);
+      this.resetCount= timer.getResetCount();
+      this.executionCount= timer.getExecutionCount();
+      this.lastRunDurationMicros= timer.getLastRunDuration(TimeUnit.MICROSECONDS);
+      this.overrunCount= timer.getOverrunCount();
+    }
+
+    /** @return the name of the timer */
+    public String getName() {
+      return this.name;
+    }
+
+    /** @return the type of scheduling of the timer */
+    public String getScheduleType() {
+      return this.scheduleType;
+    }
+
+    /** @return whether the timer is scheduled for a future execution */
+    public boolean isScheduled() {
+      return this.scheduled;
+    }
+
+    /** @return the delay until the next execution in milliseconds or -1 if the timer is not scheduled */
+    public long getNextExecutionDelayMillis() {
+      return this.nextExecutionDelayMillis;
+    }
+
+    /** @return the number of resets of the timer */
+    public long getResetCount() {
+      return this.resetCount;
+    }
+
+    /** @return the number of executions of the task of the timer */
+    public long getExecutionCount() {
+      return this.executionCount;
+    }
+
+    /** @return the duration of the last execution in microseconds or -1 if the task was not executed yet */
+    public long getLastRunDurationMicros() {
+      return this.lastRunDurationMicros;
+    }
+
+    /** @return the number of executions that exceeded the budget of the watchdog of the timer */
+    public long getOverrunCount() {
+      return this.overrunCount;
+    }
+  }
+
+
+  /**
+   * The state of a {@link Trigger} as exposed by the {@link FezRegistryMXBean}.
+   */
+  public static final class TriggerInfo {
+    private final String name;
+    private final boolean triggerPending;
+
+    private TriggerInfo(final Trigger trigger) {
+      this.name= trigger.toString();
+      this.triggerPending= trigger.isTriggerPending();
+    }
+
+    /** @return the name of the trigger */
+    public String getName() {
+      return this.name;
+    }
+
+    /** @return whether a trigger event is pending that was not yet consumed */
+    public boolean isTriggerPending() {
+      return this.triggerPending;
+    }
+  }
+}
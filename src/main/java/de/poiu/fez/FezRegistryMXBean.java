@@ -0,0 +1,55 @@
+package de.poiu.fez;
+
+import de.poiu.fez.FezRegistry.TimerInfo;
+import de.poiu.fez.FezRegistry.TriggerInfo;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * The management interface of the {@link FezRegistry}.
+ *
+ * @author mherrn
+ */
+public interface FezRegistryMXBean {
+
+  /**
+   * Returns the state of all live {@link ResettableTimer}s.
+   *
+   * @return the state of all live timers
+   */
+  public List<TimerInfo> getTimers();
+
+
+  /**
+   * Returns the state of all live {@link Trigger}s.
+   *
+   * @return the state of all live triggers
+   */
+  public List<TriggerInfo> getTriggers();
+
+
+  /**
+   * Returns the number of threads created by all live {@link NamedThreadFactory}s grouped by
+   * their name prefix.
+   *
+   * @return the number of created threads per name prefix
+   */
+  public Map<String, Long> getCreatedThreadsPerFactoryPrefix();
+
+
+  /**
+   * Returns the number of live {@link ResettableTimer}s.
+   *
+   * @return the number of live timers
+   */
+  public int getTimerCount();
+
+
+  /**
+   * Returns the number of live {@link Trigger}s.
+   *
+   * @return the number of live triggers
+   */
+  public int getTriggerCount();
+}
@@ -0,0 +1,201 @@
+package de.poiu.fez;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Jitter for periodic {@link ResettableTimer}s to avoid many timers firing at the same time.
+ * <p>
+ * A jitter consists of two parts:
+ * <ul>
+ *   <li>An initial offset that is added to the initial delay of the timer. It is always smaller
+ *       than the period of the timer and spreads the phases of different timers over the period.</li>
+ *   <li>An optional per-tick jitter that delays each single execution by a random amount up to a
+ *       given bound. For fixed-rate timers this does not accumulate, i.e. the timer still fires
+ *       at the given rate on average.</li>
+ * </ul>
+ * <p>
+ * Example for spreading 100 timers evenly over their period of 1 minute:
+ * <p>
+ * <pre>
+ * for (int i= 0; i &lt; 100; i++) {
+ *   ResettableTimer.createScheduleAtFixedRate(0, 1, TimeUnit.MINUTES, task, "timer-"+i, Jitter.spread(i, 100));
+ * }
+ * </pre>
+ *
+ * Instances of this class are immutable.
+ *
+ * @author mherrn
+ */
+public final class Jitter {
+
+  private static enum OffsetType {
+    NONE,
+    RANDOM,
+    HASH,
+    SPREAD,
+    ;
+  }
+
+  private static final Jitter NONE= new Jitter(OffsetType.NONE, 0, 0, 0);
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Attributes
+
+  private final OffsetType offsetType;
+  /** The hash for {@link OffsetType#HASH} or the index for {@link OffsetType#SPREAD}. */
+  private final int value;
+  /** The number of timers for {@link OffsetType#SPREAD}. */
+  private final int count;
+  private final long maxTickJitterNanos;
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Constructors
+
+  private Jitter(final OffsetType offsetType, final int value, final int count, final long maxTickJitterNanos) {
+    this.offsetType= offsetType;
+    this.value= value;
+    this.count= count;
+    this.maxTickJitterNanos= maxTickJitterNanos;
+  }
+
+
+  /**
+   * Returns a jitter without initial offset and without per-tick jitter.
+   *
+   * @return a jitter that does not change the scheduling
+   */
+  public static Jitter none() {
+    return NONE;
+  }
+
+
+  /**
+   * Returns a jitter with a random initial offset between 0 (inclusive) and the period
+   * of the timer (exclusive). The offset is chosen anew each time the timer is started or reset.
+   *
+   * @return a jitter with a random initial offset
+   */
+  public static Jitter randomOffset() {
+    return new Jitter(OffsetType.RANDOM, 0, 0, 0);
+  }
+
+
+  /**
+   * Returns a jitter with an initial offset derived from the hash code of the given key.
+   * The same key always results in the same offset for the same period, so that the phase of a
+   * timer is stable across resets and restarts as long as the hash code of the key is stable.
+   *
+   * @param key the key to derive the offset from
+   * @return a jitter with a hash based initial offset
+   */
+  public static Jitter hashOffset(final Object key) {
+    Require.nonNull(key, "key may not be null");
+    // spread the bits of the hash code to get a uniform distribution for similar keys
+    final int h= key.hashCode() * 0x9E3779B9;
+    return new Jitter(OffsetType.HASH, h ^ (h >>> 16), 0, 0);
+  }
+
+
+  /**
+   * Returns a jitter with an initial offset that places the timer with the given index evenly
+   * among a group of <code>count</code> timers with the same period.
+   * The offset is <code>period * index / count</code>.
+   *
+   * @param index the index of the timer in the group, starting with 0
+   * @param count the number of timers in the group
+   * @return a jitter spreading the timer within its group
+   */
+  public static Jitter spread(final int index, final int count) {
+    Require.isTrue(count > 0, "count must be positive");
+    Require.isTrue(index >= 0 && index < count, "index must be between 0 and count");
+    return new Jitter(OffsetType.SPREAD, index, count, 0);
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Methods
+
+  /**
+   * Returns a copy of this jitter that additionally delays each execution by a random amount
+   * between 0 (inclusive) and the given maximum (exclusive).
+   *
+   * @param maxTickJitter the maximum delay of each execution
+   * @param timeUnit the time unit of the maximum delay
+   * @return the new jitter
+   */
+  public Jitter withTickJitter(final long maxTickJitter, final TimeUnit timeUnit) {
+    Require.isTrue(maxTickJitter >= 0, "maxTickJitter may not be negative");
+    return new Jitter(this.offsetType, this.value, this.count, timeUnit.toNanos(maxTickJitter));
+  }
+
+
+  /**
+   * Returns whether this jitter changes the scheduling at all.
+   *
+   * @return whether this jitter has an initial offset or a per-tick jitter
+   */
+  boolean isNone() {
+    return this.offsetType == OffsetType.NONE && this.maxTickJitterNanos == 0;
+  }
+
+
+  /**
+   * Returns whether this jitter delays each single execution.
+   *
+   * @return whether this jitter has a per-tick jitter
+   */
+  boolean hasTickJitter() {
+    return this.maxTickJitterNanos > 0;
+  }
+
+
+  /**
+   * Calculates the initial offset for a timer with the given period.
+   *
+   * @param periodNanos the period of the timer in nanoseconds
+   * @param random the random number generator to use
+   * @return the initial offset in nanoseconds
+   */
+  long initialOffsetNanos(final long periodNanos, final Random random) {
+    switch (this.offsetType) {
+      case NONE:
+        return 0;
+      case RANDOM:
+        return (long) (random.nextDouble() * periodNanos);
+      case HASH:
+        return (long) ((this.value & 0xFFFFFFFFL) / 4294967296.0 * periodNanos);
+      case SPREAD:
+        return (long) ((double) this.value / this.count * periodNanos);
+      default:
+        throw new IllegalStateException("Unexpected OffsetType: "+this.offsetType);
+    }
+  }
+
+
+  /**
+   * Calculates the jitter for a single execution.
+   *
+   * @param random the random number generator to use
+   * @return the additional delay in nanoseconds
+   */
+  long tickJitterNanos(final Random random) {
+    return this.maxTickJitterNanos == 0 ? 0 : (long) (random.nextDouble() * this.maxTickJitterNanos);
+  }
+
+
+  @Override
+  public String toString() {
+    return "Jitter{"
+      + "offset=" + this.offsetType
+      + (this.offsetType == OffsetType.SPREAD ? " " + this.value + "/" + this.count : "")
+      + ", maxTickJitter=" + TimeUnit.NANOSECONDS.toMillis(this.maxTickJitterNanos) + "ms"
+      + '}';
+  }
+}
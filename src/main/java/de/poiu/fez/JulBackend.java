@@ -0,0 +1,74 @@
+package de.poiu.fez;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+
+/**
+ * A {@link LogBackend} logging to <code>java.util.logging</code>.
+ * <p>
+ * This class is only loaded when logging via <code>java.util.logging</code> is enabled.
+ *
+ * @author mherrn
+ */
+final class JulBackend implements LogBackend {
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Attributes
+
+  private final ConcurrentMap<String, Logger> loggers= new ConcurrentHashMap<>();
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Methods
+
+  @Override
+  public boolean isEnabled(final String loggerName, final LogLevel level) {
+    return this.getLogger(loggerName).isLoggable(toJulLevel(level));
+  }
+
+
+  @Override
+  public void log(final String loggerName, final LogLevel level, final String message, final Throwable throwable) {
+    final LogRecord record= new LogRecord(toJulLevel(level), message);
+    record.setLoggerName(loggerName);
+    record.setThrown(throwable);
+    // the caller is always FezLogger, so use the logger name as source instead of letting JUL infer the FezLogger
+    record.setSourceClassName(loggerName);
+    record.setSourceMethodName(null);
+    this.getLogger(loggerName).log(record);
+  }
+
+
+  private Logger getLogger(final String loggerName) {
+    final Logger logger= this.loggers.get(loggerName);
+    if (logger != null) {
+      return logger;
+    }
+
+    final Logger newLogger= Logger.getLogger(loggerName);
+    final Logger existing= this.loggers.putIfAbsent(loggerName, newLogger);
+    return existing != null ? existing : newLogger;
+  }
+
+
+  private static Level toJulLevel(final LogLevel level) {
+    switch (level) {
+      case WARN:
+        return Level.WARNING;
+      case INFO:
+        return Level.INFO;
+      case DEBUG:
+        return Level.FINE;
+      case TRACE:
+        return Level.FINEST;
+      default:
+        throw new IllegalArgumentException("Unexpected LogLevel: "+level);
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package de.poiu.fez;
+
+
+/**
+ * A backend for the log messages of fez.
+ * <p>
+ * Implement this interface to route the log messages of fez to the logging framework of the
+ * application and register it via {@link FezLogging#setBackend(de.poiu.fez.LogBackend)}.
+ * For example for SLF4J:
+ * <p>
+ * <pre>
+ * FezLogging.setBackend(new LogBackend() {
+ *   public boolean isEnabled(final String loggerName, final LogLevel level) {
+ *     final org.slf4j.Logger logger= LoggerFactory.getLogger(loggerName);
+ *     switch (level) {
+ *       case WARN:  return logger.isWarnEnabled();
+ *       case INFO:  return logger.isInfoEnabled();
+ *       case DEBUG: return logger.isDebugEnabled();
+ *       default:    return logger.isTraceEnabled();
+ *     }
+ *   }
+ *
+ *   public void log(final String loggerName, final LogLevel level, final String message, final Throwable throwable) {
+ *     ...
+ *   }
+ * });
+ * </pre>
+ *
+ * Implementations must be thread safe.
+ *
+ * @author mherrn
+ */
+public interface LogBackend {
+
+  /**
+   * Returns whether messages of the given level are logged for the given logger.
+   * <p>
+   * This method is called before each log message, so it should be fast.
+   *
+   * @param loggerName the name of the logger (the fully qualified name of the logging class)
+   * @param level the level of the message
+   * @return whether the message would be logged
+   */
+  public boolean isEnabled(String loggerName, LogLevel level);
+
+
+  /**
+   * Logs the given message.
+   * <p>
+   * This method is only called if {@link #isEnabled(java.lang.String, de.poiu.fez.LogLevel)}
+   * returned <code>true</code> for the same logger and level. The message is already formatted.
+   *
+   * @param loggerName the name of the logger (the fully qualified name of the logging class)
+   * @param level the level of the message
+   * @param message the message to log
+   * @param throwable the exception to log or <code>null</code> if there is none
+   */
+  public void log(String loggerName, LogLevel level, String message, Throwable throwable);
+}
@@ -0,0 +1,20 @@
+package de.poiu.fez;
+
+
+/**
+ * The levels of the log messages of fez.
+ *
+ * @author mherrn
+ * @see FezLogging
+ */
+public enum LogLevel {
+  /** Unexpected failures, e.g. exceptions thrown by user supplied tasks. */
+  WARN,
+  /** Noteworthy events that are rare. */
+  INFO,
+  /** Lifecycle events like starting and stopping threads. */
+  DEBUG,
+  /** Fine grained events on hot paths like each single execution of a task. */
+  TRACE,
+  ;
+}
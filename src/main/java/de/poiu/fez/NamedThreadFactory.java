@@ -1,7 +1,7 @@
 package de.poiu.fez;
 
 import java.util.concurrent.ThreadFactory;
-import java.util.logging.Logger;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -18,14 +18,14 @@ import java.util.logging.Logger;
  * @author mherrn
  */
 public class NamedThreadFactory implements ThreadFactory {
-  private static final Logger LOGGER= Logger.getLogger(NamedThreadFactory.class.getName());
+  private static final FezLogger LOGGER= FezLogger.getLogger(NamedThreadFactory.class);
 
   /////////////////////////////////////////////////////////////////////////////
   //
   // Attributes
 
   private final String namePrefix;
-  private long number= 1;
+  private final AtomicLong number= new AtomicLong(1);
   private final boolean asDaemon;
 
 
@@ -56,6 +56,7 @@ public class NamedThreadFactory implements ThreadFactory {
   public NamedThreadFactory(final String namePrefix, final boolean asDaemon) {
     this.namePrefix= namePrefix;
     this.asDaemon= asDaemon;
+    FezRegistry.register(this);
   }
 
 
@@ -66,9 +67,29 @@ public class NamedThreadFactory implements ThreadFactory {
   @Override
   public Thread newThread(Runnable r) {
     final String objId= Integer.toHexString(System.identityHashCode(this));
-    final Thread t= new Thread(r, namePrefix+"@"+objId+"-"+number++);
+    final Thread t= new Thread(r, namePrefix+"@"+objId+"-"+number.getAndIncrement());
     t.setDaemon(asDaemon);
     return t;
   }
 
+
+  /**
+   * Returns the name prefix of the threads created by this factory.
+   *
+   * @return the name prefix of the created threads
+   */
+  public String getNamePrefix() {
+    return this.namePrefix;
+  }
+
+
+  /**
+   * Returns the number of threads created by this factory.
+   *
+   * @return the number of created threads
+   */
+  public long getCreatedThreadCount() {
+    return this.number.get() - 1;
+  }
+
 }
@@ -0,0 +1,163 @@
+package de.poiu.fez;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The shared monitor thread of all {@link Watchdog}s.
+ * <p>
+ * Each watched execution registers a check that becomes due when the budget of the execution is
+ * exceeded. Checks are not removed when the execution finishes in time, since removing an element
+ * from a {@link DelayQueue} is a linear operation. Instead the {@link Watched} object decides via
+ * the sequence number of the execution whether the check is still relevant. The checks only hold
+ * a weak reference to the {@link Watched} object to not keep it reachable until the budget of a
+ * long finished execution is exceeded.
+ * <p>
+ * The monitor thread is a daemon thread that is started on the first registered check.
+ *
+ * @author mherrn
+ */
+final class OverrunMonitor {
+  private static final FezLogger LOGGER= FezLogger.getLogger(OverrunMonitor.class);
+
+  private static final DelayQueue<Check> CHECKS= new DelayQueue<>();
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Constructors
+
+  private OverrunMonitor() {
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Methods
+
+  /**
+   * Registers a check for the execution with the given sequence number.
+   *
+   * @param watched the object whose execution to check
+   * @param sequence the sequence number of the execution
+   * @param deadlineNanos the time (as by {@link System#nanoTime()}) at which the budget of the execution is exceeded
+   */
+  static void watch(final Watched watched, final long sequence, final long deadlineNanos) {
+    MonitorThread.ensureStarted();
+    CHECKS.add(new Check(watched, sequence, deadlineNanos));
+  }
+
+
+  private static void runChecks() {
+    while (true) {
+      try {
+        final Check check= CHECKS.take();
+        final Watched watched= check.watched.get();
+        if (watched == null) {
+          continue;
+        }
+
+        final long now= System.nanoTime();
+        final long recheckDelayNanos;
+        try {
+          recheckDelayNanos= watched.budgetExceeded(check.sequence, now);
+        } catch (Throwable t) {
+          LOGGER.log(LogLevel.WARN, "Handling of an overrun resulted in Exception", t);
+          continue;
+        }
+        if (recheckDelayNanos > 0) {
+          check.deadlineNanos= now + recheckDelayNanos;
+          CHECKS.add(check);
+        }
+      } catch (InterruptedException ex) {
+        LOGGER.log(LogLevel.DEBUG, "Watchdog monitor thread was interrupted. Ignoring.");
+      }
+    }
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Inner classes
+
+  /**
+   * Holder of the monitor thread. The thread is started when this class gets initialized, which
+   * the JVM guarantees to happen exactly once without any locking afterwards.
+   */
+  private static final class MonitorThread {
+    private static final Thread THREAD= start();
+
+
+    private static Thread start() {
+      final Thread thread= new Thread(new Runnable() {
+        @Override
+        public void run() {
+          runChecks();
+        }
+      }, "fez-watchdog-monitor");
+      thread.setDaemon(true);
+      thread.start();
+      return thread;
+    }
+
+
+    /**
+     * Does nothing, but triggers the initialization of this class.
+     */
+    private static void ensureStarted() {
+    }
+  }
+
+
+  /**
+   * An object whose executions are watched by the monitor.
+   */
+  static interface Watched {
+    /**
+     * Called by the monitor thread when the budget of the execution with the given sequence number
+     * is exceeded.
+     *
+     * @param sequence the sequence number of the execution
+     * @param nowNanos the current time as by {@link System#nanoTime()}
+     * @return the delay in nanoseconds after which to call this method again for the same
+     *         execution or a value &lt;= 0 if no further call is necessary
+     */
+    long budgetExceeded(long sequence, long nowNanos);
+  }
+
+
+  /**
+   * A single pending check of an execution.
+   */
+  private static final class Check implements Delayed {
+    private final WeakReference<Watched> watched;
+    private final long sequence;
+    /** Only modified by the monitor thread while this check is not in the queue. */
+    private long deadlineNanos;
+
+
+    private Check(final Watched watched, final long sequence, final long deadlineNanos) {
+      this.watched= new WeakReference<>(watched);
+      this.sequence= sequence;
+      this.deadlineNanos= deadlineNanos;
+    }
+
+
+    @Override
+    public long getDelay(final TimeUnit unit) {
+      return unit.convert(this.deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+
+    @Override
+    public int compareTo(final Delayed other) {
+      if (other instanceof Check) {
+        return Long.signum(this.deadlineNanos - ((Check) other).deadlineNanos);
+      }
+      return Long.compare(this.getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+    }
+  }
+}
@@ -1,14 +1,17 @@
 package de.poiu.fez;
 
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Delayed;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * A Timer that allows single or periodic execution in the future and has the ability
@@ -24,11 +27,17 @@ import java.util.logging.Logger;
  * @author mherrn
  */
 public class ResettableTimer {
-  private static final Logger LOGGER= Logger.getLogger(ResettableTimer.class.getName());
+  private static final FezLogger LOGGER= FezLogger.getLogger(ResettableTimer.class);
 
-  private static enum ScheduleType{
+  /**
+   * The type of scheduling of a ResettableTimer.
+   */
+  public static enum ScheduleType{
+    /** Single execution after a delay. */
     SCHEDULE,
+    /** Periodic execution at a fixed rate. */
     AT_FIXED_RATE,
+    /** Periodic execution with a fixed delay between the end of one and the start of the next execution. */
     WITH_FIXED_DELAY,
     ;
   }
@@ -39,9 +48,58 @@ public class ResettableTimer {
   private final long period;
   private final TimeUnit timeUnit;
   private final Runnable task;
+  /** Wraps {@link #task} to record execution statistics and to watch it by the {@link #watchdog}. */
+  private final Runnable measuredTask= new Runnable() {
+    @Override
+    public void run() {
+      final Watchdog watchdog= ResettableTimer.this.watchdog;
+      if (watchdog != null) {
+        runWatched(watchdog);
+        return;
+      }
+
+      final long start= System.nanoTime();
+      try {
+        task.run();
+      } finally {
+        lastRunDurationNanos= System.nanoTime() - start;
+        executionCount++;
+      }
+    }
+  };
+  /** Called by the {@link OverrunMonitor} when an execution exceeds the budget of the {@link #watchdog}. */
+  private final OverrunMonitor.Watched watched= new OverrunMonitor.Watched() {
+    @Override
+    public long budgetExceeded(final long sequence, final long nowNanos) {
+      return onBudgetExceeded(sequence, nowNanos);
+    }
+  };
   // use AtomicReference to manage concurrency in case reset() gets called from different threads
   private final AtomicReference<ScheduledFuture<?>> futureRef= new AtomicReference();
   private final String name;
+  private final Jitter jitter;
+
+  // statistics; only written while holding the lock on futureRef or from the single executor thread
+  private volatile long resetCount= 0;
+  private volatile long executionCount= 0;
+  private volatile long lastRunDurationNanos= -1;
+
+  private volatile Watchdog watchdog;
+  private volatile long skippedTickCount= 0;
+  // state of the currently watched execution; guarded by runLock
+  private final Object runLock= new Object();
+  /** The number of upcoming ticks to skip after an overrun. */
+  private long pendingSkips= 0;
+  /** Incremented whenever the timer gets (re)scheduled or cancelled to discard the state of previous executions. */
+  private long scheduleGeneration= 0;
+  private Thread runningThread;
+  private Watchdog runningWatchdog;
+  private long runSequence= 0;
+  private long runStartNanos;
+  private boolean overrunReported;
+  private boolean interruptedByWatchdog;
+  private long fallbackTicks;
+  private long overrunCount= 0;
 
 
   /**
@@ -68,12 +126,30 @@ public class ResettableTimer {
    * @see ScheduledExecutorService#scheduleAtFixedRate(java.lang.Runnable, long, long, java.util.concurrent.TimeUnit)
    */
   private ResettableTimer(final ScheduleType scheduleType, final long delay, final long period, final TimeUnit timeUnit, final Runnable task, final String name) {
+    this(scheduleType, delay, period, timeUnit, task, name, Jitter.none());
+  }
+
+
+  /**
+   * Creates a new ResettableTimer with a SingleThreadScheduledExecutor
+   *
+   * @param task
+   * @param delay
+   * @param period
+   * @param timeUnit
+   * @param name
+   * @param jitter
+   * @see ScheduledExecutorService#scheduleAtFixedRate(java.lang.Runnable, long, long, java.util.concurrent.TimeUnit)
+   */
+  private ResettableTimer(final ScheduleType scheduleType, final long delay, final long period, final TimeUnit timeUnit, final Runnable task, final String name, final Jitter jitter) {
     this.scheduleType= scheduleType;
     this.initialDelay= delay;
     this.period= period;
     this.timeUnit= timeUnit;
     this.task= task;
     this.name= name;
+    this.jitter= Require.nonNull(jitter, "jitter may not be null");
+    FezRegistry.register(this);
   }
 
 
@@ -106,6 +182,28 @@ public class ResettableTimer {
   }
 
 
+  /**
+   * Creates a fixed-rate timer whose executions are spread according to the given jitter.
+   * <p>
+   * The initial offset of the jitter is added to the initial delay. If the jitter has a per-tick
+   * jitter, each execution is additionally delayed by a random amount that does not accumulate
+   * over time.
+   *
+   * @param initialDelay
+   * @param period
+   * @param timeUnit
+   * @param task
+   * @param name the name of the timer or null
+   * @param jitter the jitter to apply
+   * @return
+   * @see ScheduledExecutorService#scheduleAtFixedRate(java.lang.Runnable, long, long, java.util.concurrent.TimeUnit)
+   * @see Jitter
+   */
+  public static ResettableTimer createScheduleAtFixedRate(final long initialDelay, final long period, final TimeUnit timeUnit, final Runnable task, final String name, final Jitter jitter){
+    return new ResettableTimer(ScheduleType.AT_FIXED_RATE, initialDelay, period, timeUnit, task, name, jitter);
+  }
+
+
 
   /**
    *
@@ -136,6 +234,27 @@ public class ResettableTimer {
   }
 
 
+  /**
+   * Creates a fixed-delay timer whose executions are spread according to the given jitter.
+   * <p>
+   * The initial offset of the jitter is added to the initial delay. If the jitter has a per-tick
+   * jitter, each delay between two executions is additionally extended by a random amount.
+   *
+   * @param initialDelay
+   * @param delay
+   * @param timeUnit
+   * @param task
+   * @param name the name of the timer or null
+   * @param jitter the jitter to apply
+   * @return
+   * @see ScheduledExecutorService#scheduleWithFixedDelay(java.lang.Runnable, long, long, java.util.concurrent.TimeUnit)
+   * @see Jitter
+   */
+  public static ResettableTimer createScheduleWithFixedDelay(final long initialDelay, final long delay, final TimeUnit timeUnit, final Runnable task, final String name, final Jitter jitter){
+    return new ResettableTimer(ScheduleType.WITH_FIXED_DELAY, initialDelay, delay, timeUnit, task, name, jitter);
+  }
+
+
   /**
    *
    * @param delay
@@ -180,23 +299,12 @@ public class ResettableTimer {
       if (this.executorService == null || this.executorService.isShutdown()) {
         this.executorService= Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(this.toString()+".executorService"));
       } else {
-        LOGGER.log(Level.WARNING, "ExecutorService already exists (this is not expected). Not creating a new one.");
+        LOGGER.log(LogLevel.WARN, "ExecutorService already exists (this is not expected). Not creating a new one.");
       }
 
       //create and schedule the new future
-      switch(scheduleType){
-        case SCHEDULE:
-          this.futureRef.set(this.executorService.schedule(task, initialDelay, timeUnit));
-          break;
-        case AT_FIXED_RATE:
-          this.futureRef.set(this.executorService.scheduleAtFixedRate(task, initialDelay, period, timeUnit));
-          break;
-        case WITH_FIXED_DELAY:
-          this.futureRef.set(this.executorService.scheduleWithFixedDelay(task, initialDelay, period, timeUnit));
-          break;
-        default:
-          throw new IllegalStateException("Unexpected ScheduleType: "+scheduleType);
-      }
+      this.discardOverrunState();
+      this.futureRef.set(this.scheduleTask());
 
       shutdownAfterCompletion(this.futureRef.get());
 
@@ -224,23 +332,12 @@ public class ResettableTimer {
       if (this.executorService == null || this.executorService.isShutdown()) {
         this.executorService= Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(this.toString()+".executorService"));
       } else {
-        LOGGER.log(Level.WARNING, "ExecutorService already exists (this is not expected). Not creating a new one.");
+        LOGGER.log(LogLevel.WARN, "ExecutorService already exists (this is not expected). Not creating a new one.");
       }
 
       //create and schedule the new future
-      switch(scheduleType){
-        case SCHEDULE:
-          this.futureRef.set(this.executorService.schedule(task, initialDelay, timeUnit));
-          break;
-        case AT_FIXED_RATE:
-          this.futureRef.set(this.executorService.scheduleAtFixedRate(task, initialDelay, period, timeUnit));
-          break;
-        case WITH_FIXED_DELAY:
-          this.futureRef.set(this.executorService.scheduleWithFixedDelay(task, initialDelay, period, timeUnit));
-          break;
-        default:
-          throw new IllegalStateException("Unexpected ScheduleType: "+scheduleType);
-      }
+      this.discardOverrunState();
+      this.futureRef.set(this.scheduleTask());
 
       shutdownAfterCompletion(this.futureRef.get());
 
@@ -263,28 +360,18 @@ public class ResettableTimer {
       if (oldFuture != null){
         oldFuture.cancel(mayInterruptIfRunning);
       }
+      this.resetCount++;
 
       //create ExecutorService
       if (this.executorService == null || this.executorService.isShutdown()) {
         this.executorService= Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(this.toString()+".executorService"));
       } else {
-        LOGGER.log(Level.FINEST, "ExecutorService already exists. Not creating a new one.");
+        LOGGER.log(LogLevel.TRACE, "ExecutorService already exists. Not creating a new one.");
       }
 
       //create and schedule the new future
-      switch(scheduleType){
-        case SCHEDULE:
-          this.futureRef.set(this.executorService.schedule(task, initialDelay, timeUnit));
-          break;
-        case AT_FIXED_RATE:
-          this.futureRef.set(this.executorService.scheduleAtFixedRate(task, initialDelay, period, timeUnit));
-          break;
-        case WITH_FIXED_DELAY:
-          this.futureRef.set(this.executorService.scheduleWithFixedDelay(task, initialDelay, period, timeUnit));
-          break;
-        default:
-          throw new IllegalStateException("Unexpected ScheduleType: "+scheduleType);
-      }
+      this.discardOverrunState();
+      this.futureRef.set(this.scheduleTask());
 
       shutdownAfterCompletion(this.futureRef.get());
 
@@ -308,6 +395,7 @@ public class ResettableTimer {
         future.cancel(mayInterruptIfRunning);
       }
 
+      this.discardOverrunState();
       this.futureRef.set(null);
     }
 
@@ -315,6 +403,244 @@ public class ResettableTimer {
   }
 
 
+  /**
+   * Schedules the task on the executor service according to the schedule type and jitter of this
+   * timer.
+   * <p>
+   * Must only be called while holding the lock on {@link #futureRef}.
+   *
+   * @return the future of the scheduled task
+   */
+  private ScheduledFuture<?> scheduleTask() {
+    if (!this.jitter.isNone() && this.scheduleType != ScheduleType.SCHEDULE) {
+      final long periodNanos= this.timeUnit.toNanos(this.period);
+      final long initialDelayNanos= this.timeUnit.toNanos(this.initialDelay)
+        + this.jitter.initialOffsetNanos(periodNanos, ThreadLocalRandom.current());
+
+      if (this.jitter.hasTickJitter()) {
+        return new JitteredFuture(this.executorService, periodNanos).start(initialDelayNanos);
+      } else if (this.scheduleType == ScheduleType.AT_FIXED_RATE) {
+        return this.executorService.scheduleAtFixedRate(measuredTask, initialDelayNanos, periodNanos, TimeUnit.NANOSECONDS);
+      } else {
+        return this.executorService.scheduleWithFixedDelay(measuredTask, initialDelayNanos, periodNanos, TimeUnit.NANOSECONDS);
+      }
+    }
+
+    switch(scheduleType){
+      case SCHEDULE:
+        return this.executorService.schedule(measuredTask, initialDelay, timeUnit);
+      case AT_FIXED_RATE:
+        return this.executorService.scheduleAtFixedRate(measuredTask, initialDelay, period, timeUnit);
+      case WITH_FIXED_DELAY:
+        return this.executorService.scheduleWithFixedDelay(measuredTask, initialDelay, period, timeUnit);
+      default:
+        throw new IllegalStateException("Unexpected ScheduleType: "+scheduleType);
+    }
+  }
+
+
+  /**
+   * Sets the watchdog for the executions of this timer.
+   * <p>
+   * The watchdog takes effect with the next execution of the task. It can be set before or after
+   * starting the timer.
+   *
+   * @param watchdog the watchdog to use or <code>null</code> to remove the current watchdog
+   * @return this ResettableTimer
+   * @see Watchdog
+   */
+  public ResettableTimer withWatchdog(final Watchdog watchdog) {
+    this.watchdog= watchdog;
+    return this;
+  }
+
+
+  /**
+   * Returns the watchdog for the executions of this timer.
+   *
+   * @return the watchdog or <code>null</code> if this timer has no watchdog
+   */
+  public Watchdog getWatchdog() {
+    return this.watchdog;
+  }
+
+
+  /**
+   * Executes the task while it is watched by the given watchdog.
+   * <p>
+   * Must only be called from the executor thread.
+   *
+   * @param watchdog the watchdog to watch the execution
+   */
+  private void runWatched(final Watchdog watchdog) {
+    final long start= System.nanoTime();
+    final long sequence;
+    final long generation;
+    synchronized(this.runLock) {
+      if (this.pendingSkips > 0) {
+        this.pendingSkips--;
+        this.skippedTickCount++;
+        LOGGER.log(LogLevel.TRACE, "[{0}] Skipping tick that overlapped with an overrunning execution.", this);
+        return;
+      }
+
+      generation= this.scheduleGeneration;
+      sequence= ++this.runSequence;
+      this.runningThread= Thread.currentThread();
+      this.runningWatchdog= watchdog;
+      this.runStartNanos= start;
+      this.overrunReported= false;
+      this.interruptedByWatchdog= false;
+      this.fallbackTicks= 0;
+    }
+    OverrunMonitor.watch(this.watched, sequence, start + watchdog.getBudgetNanos());
+
+    try {
+      task.run();
+    } finally {
+      final long duration= System.nanoTime() - start;
+      boolean overrunDetected= false;
+      synchronized(this.runLock) {
+        this.runningThread= null;
+        if (this.interruptedByWatchdog) {
+          // don't leak the interrupt into the executor thread
+          Thread.interrupted();
+        }
+        if (duration > watchdog.getBudgetNanos() && !this.overrunReported) {
+          this.overrunReported= true;
+          this.overrunCount++;
+          overrunDetected= true;
+          LOGGER.log(LogLevel.WARN, "[{0}] Execution took {1} ms and exceeded its budget of {2} ms.", this, TimeUnit.NANOSECONDS.toMillis(duration), watchdog.getBudget(TimeUnit.MILLISECONDS));
+        }
+
+        // the ticks that became due during this execution would be executed back to back now,
+        // unless the timer was rescheduled in the meantime
+        if (this.scheduleType == ScheduleType.AT_FIXED_RATE
+          && watchdog.getPolicy() != Watchdog.OverrunPolicy.INTERRUPT
+          && duration > watchdog.getBudgetNanos()
+          && generation == this.scheduleGeneration) {
+          this.pendingSkips= duration / this.timeUnit.toNanos(this.period);
+        }
+      }
+
+      if (overrunDetected) {
+        this.notifyOverrun(watchdog, duration);
+      }
+
+      lastRunDurationNanos= duration;
+      executionCount++;
+    }
+  }
+
+
+  /**
+   * Reports an overrun to the listener of the given watchdog, if it has one.
+   * <p>
+   * Must not be called while holding the {@link #runLock}.
+   *
+   * @param watchdog the watchdog whose budget was exceeded
+   * @param elapsedNanos the duration of the execution at the time the overrun was detected
+   */
+  private void notifyOverrun(final Watchdog watchdog, final long elapsedNanos) {
+    final Watchdog.OverrunListener listener= watchdog.getListener();
+    if (listener == null) {
+      return;
+    }
+
+    try {
+      listener.overrun(this, elapsedNanos);
+    } catch (Throwable t) {
+      LOGGER.log(LogLevel.WARN, "Overrun listener resulted in Exception", t);
+    }
+  }
+
+
+  /**
+   * Discards the ticks to skip after an overrun and any outstanding check of the
+   * {@link OverrunMonitor}, since they refer to the previous schedule.
+   * <p>
+   * Must only be called while holding the lock on {@link #futureRef}.
+   */
+  private void discardOverrunState() {
+    synchronized(this.runLock) {
+      this.scheduleGeneration++;
+      this.pendingSkips= 0;
+      // an outstanding check for the current execution will not find a matching sequence anymore
+      this.runSequence++;
+    }
+  }
+
+
+  /**
+   * Reacts on an execution exceeding the budget of its watchdog.
+   * <p>
+   * Called by the {@link OverrunMonitor}.
+   *
+   * @param sequence the sequence number of the execution
+   * @param nowNanos the current time
+   * @return the delay after which to call this method again or 0 if not necessary
+   */
+  private long onBudgetExceeded(final long sequence, final long nowNanos) {
+    Runnable fallbackTask= null;
+    long recheckDelayNanos= 0;
+    final Watchdog watchdog;
+    final long elapsedNanos;
+    boolean overrunDetected= false;
+    synchronized(this.runLock) {
+      if (this.runSequence != sequence || this.runningThread == null) {
+        // execution has already finished
+        return 0;
+      }
+
+      watchdog= this.runningWatchdog;
+      elapsedNanos= nowNanos - this.runStartNanos;
+      if (!this.overrunReported) {
+        this.overrunReported= true;
+        this.overrunCount++;
+        overrunDetected= true;
+        LOGGER.log(LogLevel.WARN, "[{0}] Execution exceeded its budget of {1} ms and is still running. Applying policy {2}.", this, watchdog.getBudget(TimeUnit.MILLISECONDS), watchdog.getPolicy());
+      }
+
+      switch (watchdog.getPolicy()) {
+        case SKIP_OVERLAPPING:
+          break;
+        case INTERRUPT:
+          if (!this.interruptedByWatchdog) {
+            this.interruptedByWatchdog= true;
+            this.runningThread.interrupt();
+          }
+          break;
+        case FALLBACK_EXECUTOR:
+          if (this.scheduleType == ScheduleType.SCHEDULE) {
+            break;
+          }
+          final long periodNanos= this.timeUnit.toNanos(this.period);
+          final long elapsedTicks= elapsedNanos / periodNanos;
+          // coalesce all ticks that became due since the last check into one execution
+          fallbackTask= elapsedTicks > this.fallbackTicks ? this.task : null;
+          this.fallbackTicks= elapsedTicks;
+          recheckDelayNanos= this.runStartNanos + (elapsedTicks + 1) * periodNanos - nowNanos;
+          break;
+        default:
+          throw new IllegalStateException("Unexpected OverrunPolicy: "+watchdog.getPolicy());
+      }
+    }
+
+    if (overrunDetected) {
+      this.notifyOverrun(watchdog, elapsedNanos);
+    }
+
+    if (fallbackTask != null) {
+      try {
+        watchdog.getFallbackExecutor().execute(fallbackTask);
+      } catch (RejectedExecutionException ex) {
+        LOGGER.log(LogLevel.WARN, "Fallback executor rejected the execution of an overlapping tick.", ex);
+      }
+    }
+    return recheckDelayNanos;
+  }
+
+
   /**
    * Waits in a separate thread for the complection of the specified future and shuts down
    * the execturor service in that case.
@@ -333,18 +659,26 @@ public class ResettableTimer {
       public void run() {
         try {
           final Object result = future.get();
-          LOGGER.log(Level.FINEST, "Scheduled task has finished");
+          LOGGER.log(LogLevel.TRACE, "Scheduled task has finished");
         } catch (InterruptedException ex) {
-          LOGGER.log(Level.WARNING, "Scheduled task has been interrupted", ex);
+          LOGGER.log(LogLevel.WARN, "Scheduled task has been interrupted", ex);
         } catch (ExecutionException ex) {
-          LOGGER.log(Level.WARNING, "Scheduled task resulted in Exception", ex);
+          LOGGER.log(LogLevel.WARN, "Scheduled task resulted in Exception", ex);
         } catch (CancellationException ex) {
-          LOGGER.log(Level.FINEST, "Scheduled task has been cancelled", ex);
+          LOGGER.log(LogLevel.TRACE, "Scheduled task has been cancelled", ex);
         }
 
 
-        LOGGER.log(Level.FINER, "Shutdown ExecutorService, since scheduled task has finished (or has been cancelled).");
         synchronized(futureRef) {
+          // the timer may have been reset in the meantime and the executor service is then
+          // used by the new future
+          final ScheduledFuture<?> currentFuture= futureRef.get();
+          if (currentFuture != null && currentFuture != future) {
+            LOGGER.log(LogLevel.TRACE, "Not shutting down ExecutorService, since it is used by a new scheduled task.");
+            return;
+          }
+
+          LOGGER.log(LogLevel.DEBUG, "Shutdown ExecutorService, since scheduled task has finished (or has been cancelled).");
           if (executorService != null) {
             executorService.shutdown();
             executorService= null;
@@ -357,9 +691,212 @@ public class ResettableTimer {
   }
 
 
+  /**
+   * Returns the type of scheduling of this timer.
+   *
+   * @return the type of scheduling of this timer
+   */
+  public ScheduleType getScheduleType() {
+    return this.scheduleType;
+  }
+
+
+  /**
+   * Returns whether this timer is currently scheduled for a future execution.
+   *
+   * @return whether this timer is scheduled
+   */
+  public boolean isScheduled() {
+    final ScheduledFuture<?> future= this.futureRef.get();
+    return future != null && !future.isDone();
+  }
+
+
+  /**
+   * Returns the remaining delay until the next execution of this timer.
+   *
+   * @param timeUnit the time unit to return the delay in
+   * @return the remaining delay or -1 if this timer is not scheduled
+   */
+  public long getDelay(final TimeUnit timeUnit) {
+    final ScheduledFuture<?> future= this.futureRef.get();
+    if (future == null || future.isDone()) {
+      return -1;
+    }
+    return Math.max(0, future.getDelay(timeUnit));
+  }
+
+
+  /**
+   * Returns the number of times this timer was reset.
+   *
+   * @return the number of resets
+   */
+  public long getResetCount() {
+    return this.resetCount;
+  }
+
+
+  /**
+   * Returns the number of executions of the task of this timer.
+   *
+   * @return the number of executions
+   */
+  public long getExecutionCount() {
+    return this.executionCount;
+  }
+
+
+  /**
+   * Returns the duration of the last execution of the task of this timer.
+   *
+   * @param timeUnit the time unit to return the duration in
+   * @return the duration of the last execution or -1 if the task was not executed yet
+   */
+  public long getLastRunDuration(final TimeUnit timeUnit) {
+    final long duration= this.lastRunDurationNanos;
+    return duration < 0 ? -1 : timeUnit.convert(duration, TimeUnit.NANOSECONDS);
+  }
+
+
+  /**
+   * Returns the number of executions that exceeded the budget of the watchdog of this timer.
+   *
+   * @return the number of overruns
+   * @see #withWatchdog(de.poiu.fez.Watchdog)
+   */
+  public long getOverrunCount() {
+    synchronized(this.runLock) {
+      return this.overrunCount;
+    }
+  }
+
+
+  /**
+   * Returns the number of ticks that were skipped, because they overlapped with an overrunning
+   * execution.
+   *
+   * @return the number of skipped ticks
+   * @see Watchdog.OverrunPolicy#SKIP_OVERLAPPING
+   * @see Watchdog.OverrunPolicy#FALLBACK_EXECUTOR
+   */
+  public long getSkippedTickCount() {
+    return this.skippedTickCount;
+  }
+
+
   @Override
   public String toString() {
     return "ResettableTimer" + (this.name != null ? "-" + this.name : "@" + Integer.toHexString(System.identityHashCode(this)));
   }
 
+
+  /**
+   * A periodic schedule with per-tick jitter.
+   * <p>
+   * Since ScheduledExecutorService does not support a varying period, each execution is scheduled
+   * as a one-shot task that schedules the next execution after it has finished. This future
+   * represents the whole chain and completes only when it gets cancelled or an execution fails.
+   */
+  private final class JitteredFuture implements ScheduledFuture<Object>, Runnable {
+    private final ScheduledExecutorService executor;
+    private final long periodNanos;
+    private final CompletableFuture<Object> completion= new CompletableFuture<>();
+    private volatile ScheduledFuture<?> current;
+    /** The time of the next execution without per-tick jitter. Only used for fixed-rate timers. */
+    private long nextNominalTime;
+
+
+    private JitteredFuture(final ScheduledExecutorService executor, final long periodNanos) {
+      this.executor= executor;
+      this.periodNanos= periodNanos;
+    }
+
+
+    private JitteredFuture start(final long initialDelayNanos) {
+      this.nextNominalTime= System.nanoTime() + initialDelayNanos;
+      this.current= this.executor.schedule(this, initialDelayNanos + jitter.tickJitterNanos(ThreadLocalRandom.current()), TimeUnit.NANOSECONDS);
+      return this;
+    }
+
+
+    @Override
+    public void run() {
+      if (this.completion.isDone()) {
+        return;
+      }
+
+      try {
+        measuredTask.run();
+      } catch (Throwable t) {
+        // like ScheduledExecutorService: suppress subsequent executions after an exception
+        this.completion.completeExceptionally(t);
+        return;
+      }
+
+      final long delayNanos;
+      if (scheduleType == ScheduleType.AT_FIXED_RATE) {
+        this.nextNominalTime+= this.periodNanos;
+        delayNanos= this.nextNominalTime - System.nanoTime();
+      } else {
+        delayNanos= this.periodNanos;
+      }
+
+      try {
+        this.current= this.executor.schedule(this, Math.max(0, delayNanos + jitter.tickJitterNanos(ThreadLocalRandom.current())), TimeUnit.NANOSECONDS);
+      } catch (RejectedExecutionException ex) {
+        this.completion.completeExceptionally(ex);
+        return;
+      }
+
+      // cancel() may have been called while we were scheduling the next execution
+      if (this.completion.isDone()) {
+        this.current.cancel(false);
+      }
+    }
+
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+      final boolean cancelled= this.completion.cancel(false);
+      this.current.cancel(mayInterruptIfRunning);
+      return cancelled;
+    }
+
+
+    @Override
+    public boolean isCancelled() {
+      return this.completion.isCancelled();
+    }
+
+
+    @Override
+    public boolean isDone() {
+      return this.completion.isDone();
+    }
+
+
+    @Override
+    public Object get() throws InterruptedException, ExecutionException {
+      return this.completion.get();
+    }
+
+
+    @Override
+    public Object get(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+      return this.completion.get(timeout, unit);
+    }
+
+
+    @Override
+    public long getDelay(final TimeUnit unit) {
+      return this.current.getDelay(unit);
+    }
+
+
+    @Override
+    public int compareTo(final Delayed other) {
+      return Long.compare(this.getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+    }
+  }
 }
\ No newline at end of file
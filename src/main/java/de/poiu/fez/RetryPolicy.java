@@ -0,0 +1,242 @@
+package de.poiu.fez;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+
+/**
+ * An immutable policy for retrying failed operations with exponential backoff.
+ * <p>
+ * A policy is created via {@link #exponentialBackoff(long, long, java.util.concurrent.TimeUnit)}
+ * and can be refined by the <code>with...</code> methods, each of which returns a new policy:
+ * <p>
+ * <pre>
+ * final RetryPolicy policy= RetryPolicy.exponentialBackoff(100, 10_000, TimeUnit.MILLISECONDS)
+ *   .withJitter(RetryPolicy.BackoffJitter.FULL)
+ *   .withMaxAttempts(10)
+ *   .withMaxDuration(1, TimeUnit.MINUTES)
+ *   .retryOn(ex -&gt; ex instanceof IOException);
+ * </pre>
+ *
+ * @author mherrn
+ * @see RetryScheduler
+ */
+public final class RetryPolicy {
+
+  /**
+   * The jitter to apply to the backoff delay between two attempts.
+   * <p>
+   * See <a href="https://aws.amazon.com/blogs/architecture/exponential-backoff-and-jitter/" target="_top">https://aws.amazon.com/blogs/architecture/exponential-backoff-and-jitter/</a>
+   * for a comparison of the different kinds of jitter.
+   */
+  public static enum BackoffJitter {
+    /** The delay grows exponentially without any randomization. */
+    NONE,
+    /** The delay is chosen randomly between 0 and the exponentially growing delay. */
+    FULL,
+    /**
+     * The delay is chosen randomly between the initial delay and the previous delay multiplied by
+     * the {@link #withMultiplier(double) multiplier}. The usual choice for decorrelated jitter is a
+     * multiplier of 3.
+     */
+    DECORRELATED,
+    ;
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Attributes
+
+  private final long initialDelayNanos;
+  private final long maxDelayNanos;
+  private final double multiplier;
+  private final BackoffJitter jitter;
+  private final int maxAttempts;
+  private final long maxDurationNanos;
+  private final Predicate<? super Throwable> retryPredicate;
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Constructors
+
+  private RetryPolicy(final long initialDelayNanos,
+                      final long maxDelayNanos,
+                      final double multiplier,
+                      final BackoffJitter jitter,
+                      final int maxAttempts,
+                      final long maxDurationNanos,
+                      final Predicate<? super Throwable> retryPredicate) {
+    this.initialDelayNanos= initialDelayNanos;
+    this.maxDelayNanos= maxDelayNanos;
+    this.multiplier= multiplier;
+    this.jitter= jitter;
+    this.maxAttempts= maxAttempts;
+    this.maxDurationNanos= maxDurationNanos;
+    this.retryPredicate= retryPredicate;
+  }
+
+
+  /**
+   * Creates a new policy with an exponential backoff that starts at the given initial delay and
+   * doubles with each attempt until the given maximum delay is reached.
+   * <p>
+   * The policy has no jitter, an unlimited number of attempts, no maximum duration and retries on
+   * all exceptions.
+   *
+   * @param initialDelay the delay before the first retry
+   * @param maxDelay the maximum delay between two attempts
+   * @param timeUnit the time unit of the delays
+   * @return the new policy
+   */
+  public static RetryPolicy exponentialBackoff(final long initialDelay, final long maxDelay, final TimeUnit timeUnit) {
+    Require.isTrue(initialDelay >= 0, "initialDelay may not be negative");
+    Require.isTrue(maxDelay >= initialDelay, "maxDelay may not be smaller than initialDelay");
+    return new RetryPolicy(timeUnit.toNanos(initialDelay), timeUnit.toNanos(maxDelay), 2.0, BackoffJitter.NONE, Integer.MAX_VALUE, Long.MAX_VALUE, ex -> true);
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Methods
+
+  /**
+   * Returns a copy of this policy with the given multiplier for the exponential backoff.
+   *
+   * @param multiplier the factor to multiply the delay with after each attempt. For
+   *                   {@link BackoffJitter#DECORRELATED} this is the factor for the upper bound of
+   *                   the next delay. Must be at least 1.
+   * @return the new policy
+   */
+  public RetryPolicy withMultiplier(final double multiplier) {
+    Require.isTrue(multiplier >= 1.0, "multiplier must be at least 1");
+    return new RetryPolicy(initialDelayNanos, maxDelayNanos, multiplier, jitter, maxAttempts, maxDurationNanos, retryPredicate);
+  }
+
+
+  /**
+   * Returns a copy of this policy with the given jitter.
+   *
+   * @param jitter the jitter to apply to the delays
+   * @return the new policy
+   */
+  public RetryPolicy withJitter(final BackoffJitter jitter) {
+    Require.nonNull(jitter, "jitter may not be null");
+    return new RetryPolicy(initialDelayNanos, maxDelayNanos, multiplier, jitter, maxAttempts, maxDurationNanos, retryPredicate);
+  }
+
+
+  /**
+   * Returns a copy of this policy with the given maximum number of attempts (including the first one).
+   *
+   * @param maxAttempts the maximum number of attempts
+   * @return the new policy
+   */
+  public RetryPolicy withMaxAttempts(final int maxAttempts) {
+    Require.isTrue(maxAttempts > 0, "maxAttempts must be positive");
+    return new RetryPolicy(initialDelayNanos, maxDelayNanos, multiplier, jitter, maxAttempts, maxDurationNanos, retryPredicate);
+  }
+
+
+  /**
+   * Returns a copy of this policy with the given maximum duration. No further attempt is started
+   * if it would start later than the maximum duration after the first attempt.
+   *
+   * @param maxDuration the maximum duration
+   * @param timeUnit the time unit of the maximum duration
+   * @return the new policy
+   */
+  public RetryPolicy withMaxDuration(final long maxDuration, final TimeUnit timeUnit) {
+    Require.isTrue(maxDuration >= 0, "maxDuration may not be negative");
+    return new RetryPolicy(initialDelayNanos, maxDelayNanos, multiplier, jitter, maxAttempts, timeUnit.toNanos(maxDuration), retryPredicate);
+  }
+
+
+  /**
+   * Returns a copy of this policy that only retries on exceptions matching the given predicate.
+   * Other exceptions fail immediately.
+   *
+   * @param retryPredicate the predicate to decide whether to retry on an exception
+   * @return the new policy
+   */
+  public RetryPolicy retryOn(final Predicate<? super Throwable> retryPredicate) {
+    Require.nonNull(retryPredicate, "retryPredicate may not be null");
+    return new RetryPolicy(initialDelayNanos, maxDelayNanos, multiplier, jitter, maxAttempts, maxDurationNanos, retryPredicate);
+  }
+
+
+  /**
+   * Returns the maximum number of attempts.
+   *
+   * @return the maximum number of attempts
+   */
+  public int getMaxAttempts() {
+    return this.maxAttempts;
+  }
+
+
+  /**
+   * Returns the maximum duration in nanoseconds.
+   *
+   * @return the maximum duration in nanoseconds or {@link Long#MAX_VALUE} if unlimited
+   */
+  long getMaxDurationNanos() {
+    return this.maxDurationNanos;
+  }
+
+
+  /**
+   * Returns whether a retry should be done after the given exception.
+   *
+   * @param exception the exception of the failed attempt
+   * @return whether to retry
+   */
+  boolean shouldRetry(final Throwable exception) {
+    return this.retryPredicate.test(exception);
+  }
+
+
+  /**
+   * Calculates the delay before the next attempt.
+   *
+   * @param attempt the number of the failed attempt, starting with 1
+   * @param previousDelayNanos the delay before the failed attempt, 0 for the first attempt
+   * @param random the random number generator to use for the jitter
+   * @return the delay before the next attempt in nanoseconds
+   */
+  long nextDelayNanos(final int attempt, final long previousDelayNanos, final Random random) {
+    switch (this.jitter) {
+      case NONE:
+        return this.exponentialDelayNanos(attempt);
+      case FULL:
+        return (long) (random.nextDouble() * this.exponentialDelayNanos(attempt));
+      case DECORRELATED:
+        final double upperBound= Math.max(this.initialDelayNanos, previousDelayNanos * this.multiplier);
+        final double delay= this.initialDelayNanos + random.nextDouble() * (upperBound - this.initialDelayNanos);
+        return (long) Math.min(this.maxDelayNanos, delay);
+      default:
+        throw new IllegalStateException("Unexpected BackoffJitter: "+this.jitter);
+    }
+  }
+
+
+  private long exponentialDelayNanos(final int attempt) {
+    final double delay= this.initialDelayNanos * Math.pow(this.multiplier, attempt - 1);
+    return (long) Math.min(this.maxDelayNanos, delay);
+  }
+
+
+  @Override
+  public String toString() {
+    return "RetryPolicy{"
+      + "initialDelay=" + TimeUnit.NANOSECONDS.toMillis(initialDelayNanos) + "ms"
+      + ", maxDelay=" + TimeUnit.NANOSECONDS.toMillis(maxDelayNanos) + "ms"
+      + ", multiplier=" + multiplier
+      + ", jitter=" + jitter
+      + ", maxAttempts=" + maxAttempts
+      + ", maxDuration=" + (maxDurationNanos == Long.MAX_VALUE ? "unlimited" : TimeUnit.NANOSECONDS.toMillis(maxDurationNanos) + "ms")
+      + '}';
+  }
+}
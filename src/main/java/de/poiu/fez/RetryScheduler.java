@@ -0,0 +1,296 @@
+package de.poiu.fez;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+
+/**
+ * Executes operations with retries according to a {@link RetryPolicy}.
+ * <p>
+ * All retries share the same {@link ScheduledExecutorService} for waiting between the attempts.
+ * Therefore no thread is occupied by a retry while it waits for its next attempt, which allows a
+ * large number of concurrent retries.
+ * <p>
+ * Operations can be submitted either as a blocking {@link Callable} via
+ * {@link #submit(java.util.concurrent.Callable, de.poiu.fez.RetryPolicy)} or as an asynchronous
+ * operation returning a {@link CompletionStage} via
+ * {@link #submitAsync(java.util.function.Supplier, de.poiu.fez.RetryPolicy)}. In both cases the
+ * result is provided as a {@link CompletableFuture}. Cancelling that future stops further attempts.
+ * <p>
+ * If the last attempt fails, the returned future is completed exceptionally with the exception of
+ * the last attempt.
+ *
+ * @author mherrn
+ */
+public class RetryScheduler {
+  private static final FezLogger LOGGER= FezLogger.getLogger(RetryScheduler.class);
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Attributes
+
+  private final ScheduledExecutorService scheduler;
+  private final Executor attemptExecutor;
+  /** Whether the scheduler was created by this RetryScheduler and must be shut down by it. */
+  private final boolean ownsScheduler;
+  private final String name;
+  /** The retries whose result is not yet complete. */
+  private final Set<Retry<?>> pendingRetries= ConcurrentHashMap.newKeySet();
+  private volatile boolean shutdown= false;
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Constructors
+
+  /**
+   * Creates a new RetryScheduler with its own single-threaded scheduler.
+   * <p>
+   * The attempts of {@link Callable}s are executed on that thread, too. If they block for a long
+   * time, use {@link #RetryScheduler(java.util.concurrent.ScheduledExecutorService, java.util.concurrent.Executor)}
+   * to execute them on a separate executor.
+   *
+   * @param name the name of this RetryScheduler
+   */
+  public RetryScheduler(final String name) {
+    this.name= Require.nonNull(name, "name may not be null");
+    this.scheduler= Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("RetryScheduler-"+name));
+    this.attemptExecutor= this.scheduler;
+    this.ownsScheduler= true;
+  }
+
+
+  /**
+   * Creates a new RetryScheduler that uses the given scheduler for waiting between the attempts
+   * and the given executor for executing the attempts.
+   * <p>
+   * The given scheduler and executor are not shut down by {@link #shutdown()}.
+   *
+   * @param scheduler the scheduler for waiting between the attempts
+   * @param attemptExecutor the executor for executing the attempts
+   */
+  public RetryScheduler(final ScheduledExecutorService scheduler, final Executor attemptExecutor) {
+    this.scheduler= Require.nonNull(scheduler, "scheduler may not be null");
+    this.attemptExecutor= Require.nonNull(attemptExecutor, "attemptExecutor may not be null");
+    this.ownsScheduler= false;
+    this.name= Integer.toHexString(System.identityHashCode(this));
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Methods
+
+  /**
+   * Executes the given operation and retries it according to the given policy if it fails.
+   * The first attempt is started immediately.
+   *
+   * @param <T> the result type of the operation
+   * @param operation the operation to execute
+   * @param policy the policy for retrying
+   * @return the future result of the operation
+   */
+  public <T> CompletableFuture<T> submit(final Callable<T> operation, final RetryPolicy policy) {
+    Require.nonNull(operation, "operation may not be null");
+    return this.submitAsync(new Supplier<CompletionStage<T>>() {
+      @Override
+      public CompletionStage<T> get() {
+        final CompletableFuture<T> result= new CompletableFuture<>();
+        try {
+          result.complete(operation.call());
+        } catch (Throwable t) {
+          result.completeExceptionally(t);
+        }
+        return result;
+      }
+    }, policy);
+  }
+
+
+  /**
+   * Executes the given asynchronous operation and retries it according to the given policy if it
+   * fails. The first attempt is started immediately.
+   * <p>
+   * The supplier is called for each attempt and must return a new {@link CompletionStage} for that
+   * attempt. No thread is occupied while waiting for that stage to complete.
+   *
+   * @param <T> the result type of the operation
+   * @param operation the supplier of the operation to execute
+   * @param policy the policy for retrying
+   * @return the future result of the operation. If this RetryScheduler was already shut down, the
+   *         future is completed exceptionally with a {@link java.util.concurrent.RejectedExecutionException}.
+   */
+  public <T> CompletableFuture<T> submitAsync(final Supplier<? extends CompletionStage<T>> operation, final RetryPolicy policy) {
+    Require.nonNull(operation, "operation may not be null");
+    Require.nonNull(policy, "policy may not be null");
+
+    final Retry<T> retry= new Retry<>(operation, policy);
+    if (this.shutdown) {
+      retry.result.completeExceptionally(new RejectedExecutionException(this+" is already shut down"));
+      return retry.result;
+    }
+
+    this.pendingRetries.add(retry);
+    retry.result.whenComplete((r, t) -> this.pendingRetries.remove(retry));
+    // shutdown() may have been called before we added the retry to pendingRetries
+    if (this.shutdown) {
+      retry.result.cancel(false);
+      return retry.result;
+    }
+
+    retry.scheduleAttempt(0);
+    return retry.result;
+  }
+
+
+  /**
+   * Shuts down this RetryScheduler. The futures of all pending retries are completed exceptionally
+   * with a {@link CancellationException} and no further attempts are started. New operations are
+   * rejected.
+   * <p>
+   * The internal scheduler is shut down, too. An external scheduler and executor are not shut down.
+   */
+  public void shutdown() {
+    this.shutdown= true;
+    if (this.ownsScheduler) {
+      this.scheduler.shutdownNow();
+    }
+
+    for (final Retry<?> retry : this.pendingRetries) {
+      retry.result.cancel(false);
+    }
+  }
+
+
+  @Override
+  public String toString() {
+    return "RetryScheduler-"+this.name;
+  }
+
+
+  private static Throwable unwrap(final Throwable t) {
+    if ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+      return t.getCause();
+    }
+    return t;
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Inner classes
+
+  /**
+   * The state of a single retried operation.
+   */
+  private final class Retry<T> implements Runnable {
+    private final Supplier<? extends CompletionStage<T>> operation;
+    private final RetryPolicy policy;
+    private final CompletableFuture<T> result= new CompletableFuture<>();
+    private final long startTime= System.nanoTime();
+
+    // only accessed by one attempt at a time
+    private int attempt= 0;
+    private long lastDelayNanos= 0;
+    private volatile Future<?> pendingAttempt;
+
+
+    private Retry(final Supplier<? extends CompletionStage<T>> operation, final RetryPolicy policy) {
+      this.operation= operation;
+      this.policy= policy;
+
+      // stop waiting for the next attempt if the result gets cancelled
+      this.result.whenComplete((r, t) -> {
+        final Future<?> f= this.pendingAttempt;
+        if (f != null && this.result.isCancelled()) {
+          f.cancel(false);
+        }
+      });
+    }
+
+
+    private void scheduleAttempt(final long delayNanos) {
+      try {
+        this.pendingAttempt= scheduler.schedule(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              attemptExecutor.execute(Retry.this);
+            } catch (RejectedExecutionException ex) {
+              // the scheduled future would swallow the exception
+              result.completeExceptionally(ex);
+            }
+          }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+      } catch (RejectedExecutionException ex) {
+        this.result.completeExceptionally(ex);
+      }
+    }
+
+
+    /**
+     * Executes a single attempt.
+     */
+    @Override
+    public void run() {
+      if (this.result.isDone()) {
+        return;
+      }
+
+      this.attempt++;
+      final CompletionStage<T> stage;
+      try {
+        stage= Require.nonNull(this.operation.get(), "operation returned null");
+      } catch (Throwable t) {
+        this.onFailure(t);
+        return;
+      }
+
+      stage.whenComplete((value, t) -> {
+        if (t == null) {
+          this.result.complete(value);
+        } else {
+          this.onFailure(unwrap(t));
+        }
+      });
+    }
+
+
+    private void onFailure(final Throwable t) {
+      if (this.result.isDone()) {
+        return;
+      }
+
+      if (this.attempt >= this.policy.getMaxAttempts() || !this.policy.shouldRetry(t)) {
+        this.result.completeExceptionally(t);
+        return;
+      }
+
+      final long delayNanos= this.policy.nextDelayNanos(this.attempt, this.lastDelayNanos, ThreadLocalRandom.current());
+      final long elapsedNanos= System.nanoTime() - this.startTime;
+      if (this.policy.getMaxDurationNanos() - elapsedNanos < delayNanos) {
+        LOGGER.log(LogLevel.DEBUG, "[{0}] Giving up after {1} attempts since the maximum duration would be exceeded.", RetryScheduler.this, this.attempt);
+        this.result.completeExceptionally(t);
+        return;
+      }
+
+      LOGGER.log(LogLevel.DEBUG, "[{0}] Attempt {1} failed. Retrying in {2} ms.", RetryScheduler.this, this.attempt, TimeUnit.NANOSECONDS.toMillis(delayNanos));
+      this.lastDelayNanos= delayNanos;
+      this.scheduleAttempt(delayNanos);
+    }
+  }
+}
@@ -0,0 +1,537 @@
+package de.poiu.fez;
+
+import de.poiu.fez.ResettableTimer.ScheduleType;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A persistent journal of timer deadlines to restore a group of timers after a restart.
+ * <p>
+ * Each timer is identified by a <code>long</code> key. Whenever a timer is started or reset, its
+ * new absolute deadline is appended to the journal via
+ * {@link #put(long, long, de.poiu.fez.ResettableTimer.ScheduleType, long)}. When a timer is
+ * cancelled or has finished, it is removed via {@link #remove(long)}. Both operations only append a
+ * small fixed-size record to a memory-mapped file and are therefore cheap enough to be called on
+ * every reset.
+ * <p>
+ * On startup {@link #restore(de.poiu.fez.TimerJournal.Restorer)} reads the journal and reports the
+ * last state of each timer together with its remaining delay, so that the timer can be re-armed.
+ * The deadlines of periodic timers that have passed while the application was not running are
+ * advanced to the next period after the time of restoring. The missed executions are not reported.
+ * Since the journal grows with each reset, it should be compacted from time to time via
+ * {@link #compact()}, which rewrites the journal to contain only one record per live timer.
+ * <p>
+ * Deadlines are stored as wall clock time in milliseconds since the epoch to remain valid across
+ * restarts. Periods are stored in milliseconds, too. Periodic timers must therefore have a period of
+ * at least 1 millisecond.
+ * <p>
+ * The journal is only written to the page cache of the operating system. Its contents therefore
+ * survive a crash of the JVM, but not necessarily a crash of the operating system unless
+ * {@link #force()} was called.
+ * <p>
+ * An example of re-arming timers on an {@link EventLoop} after a restart:
+ * <p>
+ * <pre>
+ * try (final TimerJournal journal= TimerJournal.open(path)) {
+ *   journal.restore((key, remainingDelay, scheduleType, period) -&gt; {
+ *     timers.put(key, eventLoop.schedule(() -&gt; expire(key), remainingDelay, TimeUnit.MILLISECONDS));
+ *   });
+ *   ...
+ * }
+ * </pre>
+ *
+ * This class is thread safe.
+ *
+ * @author mherrn
+ */
+public class TimerJournal implements Closeable {
+  private static final FezLogger LOGGER= FezLogger.getLogger(TimerJournal.class);
+
+  /**
+   * Callback for restoring the timers of a journal.
+   */
+  @FunctionalInterface
+  public static interface Restorer {
+    /**
+     * Restores the timer with the given key.
+     *
+     * @param key the key of the timer
+     * @param remainingDelay the remaining delay until the next execution in milliseconds.
+     *                       For one-shot timers this is 0 if the deadline has already passed. For
+     *                       periodic timers it is the delay until the next period after now.
+     * @param scheduleType the type of scheduling of the timer
+     * @param period the period of the timer in milliseconds. Meaningless for {@link ScheduleType#SCHEDULE}.
+     */
+    public void restore(long key, long remainingDelay, ScheduleType scheduleType, long period);
+  }
+
+  /** Magic number at the start of each journal file ("FEZT"). */
+  private static final int MAGIC= 0x46455a54;
+  private static final int VERSION= 1;
+  private static final int HEADER_SIZE= 8;
+
+  // Each record consists of: kind (1 byte), key (8 bytes), deadline (8 bytes), period (8 bytes).
+  // A kind of 0 marks the end of the written data.
+  private static final int RECORD_SIZE= 25;
+  private static final byte KIND_END= 0;
+  private static final byte KIND_REMOVED= 1;
+  private static final byte KIND_SCHEDULE_TYPE_OFFSET= 2;
+
+  private static final long INITIAL_SIZE= HEADER_SIZE + 64L * 1024 * RECORD_SIZE;
+  private static final long MAX_SIZE= HEADER_SIZE + (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE * (long) RECORD_SIZE;
+
+  private static final ScheduleType[] SCHEDULE_TYPES= ScheduleType.values();
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Attributes
+
+  private final Path file;
+  private FileChannel channel;
+  private MappedByteBuffer buffer;
+  /** The position to write the next record to. */
+  private int writePosition;
+  private boolean closed= false;
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Constructors
+
+  private TimerJournal(final Path file) {
+    this.file= file;
+  }
+
+
+  /**
+   * Opens the journal in the given file. If the file does not exist, it will be created.
+   *
+   * @param file the file of the journal
+   * @return the opened journal
+   * @throws IOException if the file cannot be opened or is not a valid journal
+   */
+  public static TimerJournal open(final Path file) throws IOException {
+    Require.nonNull(file, "file may not be null");
+    final TimerJournal journal= new TimerJournal(file);
+    journal.openFile();
+    return journal;
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Methods
+
+  /**
+   * Records a new deadline for the timer with the given key. This replaces any previously recorded
+   * deadline for that key.
+   *
+   * @param key the key of the timer
+   * @param deadline the absolute deadline of the next execution in milliseconds since the epoch
+   * @param scheduleType the type of scheduling of the timer
+   * @param period the period of the timer in milliseconds. Must be positive for periodic timers.
+   *               Ignored for {@link ScheduleType#SCHEDULE}.
+   * @throws IOException if the journal cannot be extended
+   * @throws IllegalStateException if this journal is already closed
+   * @throws IllegalArgumentException if the period of a periodic timer is not positive
+   */
+  public synchronized void put(final long key, final long deadline, final ScheduleType scheduleType, final long period) throws IOException {
+    Require.nonNull(scheduleType, "scheduleType may not be null");
+    Require.isTrue(scheduleType == ScheduleType.SCHEDULE || period > 0, "period must be positive for periodic timers");
+    this.ensureOpen();
+    this.append((byte) (KIND_SCHEDULE_TYPE_OFFSET + scheduleType.ordinal()), key, deadline, period);
+  }
+
+
+  /**
+   * Records a new deadline for the timer with the given key relative to the current time.
+   * <p>
+   * The journal has a resolution of milliseconds. The delay and the period are truncated to whole
+   * milliseconds. Periodic timers therefore need a period of at least 1 millisecond.
+   *
+   * @param key the key of the timer
+   * @param delay the delay until the next execution
+   * @param timeUnit the time unit of the delay and the period
+   * @param scheduleType the type of scheduling of the timer
+   * @param period the period of the timer. Must be at least 1 millisecond for periodic timers.
+   *               Ignored for {@link ScheduleType#SCHEDULE}.
+   * @throws IOException if the journal cannot be extended
+   * @throws IllegalStateException if this journal is already closed
+   * @throws IllegalArgumentException if the period of a periodic timer is less than 1 millisecond
+   * @see #put(long, long, de.poiu.fez.ResettableTimer.ScheduleType, long)
+   */
+  public void put(final long key, final long delay, final TimeUnit timeUnit, final ScheduleType scheduleType, final long period) throws IOException {
+    Require.nonNull(timeUnit, "timeUnit may not be null");
+    Require.nonNull(scheduleType, "scheduleType may not be null");
+    final long periodMillis= timeUnit.toMillis(period);
+    Require.isTrue(scheduleType == ScheduleType.SCHEDULE || periodMillis > 0, "period must be at least 1 ms for periodic timers");
+    this.put(key, System.currentTimeMillis() + timeUnit.toMillis(delay), scheduleType, periodMillis);
+  }
+
+
+  /**
+   * Removes the timer with the given key from this journal.
+   *
+   * @param key the key of the timer
+   * @throws IOException if the journal cannot be extended
+   * @throws IllegalStateException if this journal is already closed
+   */
+  public synchronized void remove(final long key) throws IOException {
+    this.ensureOpen();
+    this.append(KIND_REMOVED, key, 0, 0);
+  }
+
+
+  /**
+   * Reads all timers from this journal and passes them to the given restorer.
+   * <p>
+   * For each key only the last recorded state is reported. Removed timers are not reported.
+   * The timers are reported in the order they were first recorded.
+   * <p>
+   * If the deadline of a periodic timer has already passed, it is advanced by whole periods to the
+   * first deadline that is not before now. The journal itself is not changed by this.
+   *
+   * @param restorer the restorer to pass the timers to
+   */
+  public synchronized void restore(final Restorer restorer) {
+    Require.nonNull(restorer, "restorer may not be null");
+    this.ensureOpen();
+    final Entries entries= this.readEntries();
+    final long now= System.currentTimeMillis();
+    for (int i= 0; i < entries.size; i++) {
+      final byte kind= entries.kinds[i];
+      if (kind == KIND_REMOVED) {
+        continue;
+      }
+
+      final ScheduleType scheduleType= SCHEDULE_TYPES[kind - KIND_SCHEDULE_TYPE_OFFSET];
+      final long period= entries.periods[i];
+      long deadline= entries.deadlines[i];
+      if (scheduleType != ScheduleType.SCHEDULE && period > 0 && deadline < now) {
+        final long missedPeriods= (now - deadline + period - 1) / period;
+        deadline+= missedPeriods * period;
+      }
+
+      restorer.restore(entries.keys[i], Math.max(0, deadline - now), scheduleType, period);
+    }
+  }
+
+
+  /**
+   * Rewrites this journal to contain only the last state of each live timer.
+   * <p>
+   * The compacted journal is written to a temporary file which then atomically replaces the
+   * current journal file.
+   * <p>
+   * If the compacted journal cannot replace the current journal file, the current journal stays
+   * in use. If the journal file cannot be opened again afterwards, this journal is closed.
+   *
+   * @throws IOException if the compacted journal cannot be written
+   * @throws IllegalStateException if this journal is already closed
+   */
+  public synchronized void compact() throws IOException {
+    this.ensureOpen();
+    final Entries entries= this.readEntries();
+    int liveCount= 0;
+    for (int i= 0; i < entries.size; i++) {
+      if (entries.kinds[i] != KIND_REMOVED) {
+        liveCount++;
+      }
+    }
+
+    final Path tmpFile= this.file.resolveSibling(this.file.getFileName()+".tmp");
+    final long size= Math.min(MAX_SIZE, Math.max(INITIAL_SIZE, HEADER_SIZE + 2L * liveCount * RECORD_SIZE));
+    try (final FileChannel tmpChannel= FileChannel.open(tmpFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      final MappedByteBuffer tmpBuffer= tmpChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      tmpBuffer.putInt(0, MAGIC);
+      tmpBuffer.putInt(4, VERSION);
+      int position= HEADER_SIZE;
+      for (int i= 0; i < entries.size; i++) {
+        final byte kind= entries.kinds[i];
+        if (kind == KIND_REMOVED) {
+          continue;
+        }
+        writeRecord(tmpBuffer, position, kind, entries.keys[i], entries.deadlines[i], entries.periods[i]);
+        position+= RECORD_SIZE;
+      }
+      tmpBuffer.force();
+    } catch (IOException | RuntimeException ex) {
+      deleteQuietly(tmpFile);
+      throw ex;
+    }
+
+    final FileChannel oldChannel= this.channel;
+    try {
+      try {
+        Files.move(tmpFile, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException ex) {
+        // some platforms (e.g. Windows) don't allow replacing a file that is still open
+        LOGGER.log(LogLevel.DEBUG, "[{0}] Cannot replace the journal file while it is open. Retrying after closing it.", this);
+        oldChannel.close();
+        Files.move(tmpFile, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+    } catch (IOException ex) {
+      deleteQuietly(tmpFile);
+      if (!oldChannel.isOpen()) {
+        // the old journal file is still in place, so continue with it
+        this.reopenOrClose(ex);
+      }
+      throw ex;
+    }
+
+    oldChannel.close();
+    try {
+      this.openFile();
+    } catch (IOException ex) {
+      this.markClosed();
+      throw ex;
+    }
+    LOGGER.log(LogLevel.DEBUG, "[{0}] Compacted {1} records into {2} records.", this, entries.recordCount, liveCount);
+  }
+
+
+  /**
+   * Forces all changes of this journal to be written to the storage device.
+   */
+  public synchronized void force() {
+    this.ensureOpen();
+    this.buffer.force();
+  }
+
+
+  /**
+   * Closes this journal. All further calls of the other methods of this journal throw an
+   * {@link IllegalStateException}. Closing an already closed journal has no effect.
+   *
+   * @throws IOException if closing the file fails
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+    this.closed= true;
+    // the mapping stays valid until it is garbage collected; drop our reference to it
+    this.buffer= null;
+    this.channel.close();
+  }
+
+
+  /**
+   * Closes this journal after a failure that left it unusable.
+   */
+  private void markClosed() {
+    try {
+      this.close();
+    } catch (IOException ex) {
+      LOGGER.log(LogLevel.DEBUG, "Closing the journal file "+this.file+" failed.", ex);
+    }
+  }
+
+
+  /**
+   * Opens the journal file again after a failed {@link #compact()}. If that fails, too, this
+   * journal is closed.
+   *
+   * @param cause the exception that made the compaction fail
+   */
+  private void reopenOrClose(final IOException cause) {
+    try {
+      this.openFile();
+    } catch (IOException ex) {
+      cause.addSuppressed(ex);
+      this.markClosed();
+    }
+  }
+
+
+  private static void deleteQuietly(final Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException ex) {
+      LOGGER.log(LogLevel.DEBUG, "Cannot delete "+file, ex);
+    }
+  }
+
+
+  private void ensureOpen() {
+    if (this.closed) {
+      throw new IllegalStateException(this+" is already closed");
+    }
+  }
+
+
+  private void openFile() throws IOException {
+    this.channel= FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    final long fileSize= this.channel.size();
+    if (fileSize > MAX_SIZE) {
+      this.channel.close();
+      throw new IOException("Journal file "+this.file+" is too large: "+fileSize);
+    }
+
+    this.buffer= this.channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(fileSize, INITIAL_SIZE));
+    if (fileSize == 0) {
+      this.buffer.putInt(0, MAGIC);
+      this.buffer.putInt(4, VERSION);
+    } else if (this.buffer.getInt(0) != MAGIC || this.buffer.getInt(4) != VERSION) {
+      this.channel.close();
+      throw new IOException("Not a valid timer journal: "+this.file);
+    }
+
+    int position= HEADER_SIZE;
+    while (position + RECORD_SIZE <= this.buffer.capacity() && this.buffer.get(position) != KIND_END) {
+      position+= RECORD_SIZE;
+    }
+    this.writePosition= position;
+  }
+
+
+  private void append(final byte kind, final long key, final long deadline, final long period) throws IOException {
+    if (this.writePosition + RECORD_SIZE > this.buffer.capacity()) {
+      this.grow();
+    }
+    writeRecord(this.buffer, this.writePosition, kind, key, deadline, period);
+    this.writePosition+= RECORD_SIZE;
+  }
+
+
+  private void grow() throws IOException {
+    final long capacity= this.buffer.capacity();
+    if (capacity >= MAX_SIZE) {
+      this.compact();
+      if (this.writePosition + RECORD_SIZE > this.buffer.capacity()) {
+        throw new IllegalStateException("Timer journal "+this.file+" is full");
+      }
+      return;
+    }
+
+    this.buffer= this.channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(MAX_SIZE, capacity * 2));
+  }
+
+
+  private static void writeRecord(final MappedByteBuffer buffer, final int position, final byte kind, final long key, final long deadline, final long period) {
+    buffer.putLong(position + 1, key);
+    buffer.putLong(position + 9, deadline);
+    buffer.putLong(position + 17, period);
+    // write the kind last, since a kind != 0 marks the record as complete
+    buffer.put(position, kind);
+  }
+
+
+  /**
+   * Reads the last state of each key from the journal.
+   */
+  private Entries readEntries() {
+    final int recordCount= (this.writePosition - HEADER_SIZE) / RECORD_SIZE;
+    final Entries entries= new Entries(recordCount);
+    final LongIntMap indexByKey= new LongIntMap(recordCount);
+
+    for (int position= HEADER_SIZE; position < this.writePosition; position+= RECORD_SIZE) {
+      final byte kind= this.buffer.get(position);
+      final long key= this.buffer.getLong(position + 1);
+
+      int index= indexByKey.get(key);
+      if (index < 0) {
+        if (kind == KIND_REMOVED) {
+          continue;
+        }
+        index= entries.size++;
+        indexByKey.put(key, index);
+        entries.keys[index]= key;
+      }
+
+      entries.kinds[index]= kind;
+      entries.deadlines[index]= this.buffer.getLong(position + 9);
+      entries.periods[index]= this.buffer.getLong(position + 17);
+    }
+
+    return entries;
+  }
+
+
+  @Override
+  public String toString() {
+    return "TimerJournal-"+this.file;
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Inner classes
+
+  /**
+   * The entries read from a journal in struct-of-arrays layout.
+   */
+  private static final class Entries {
+    private final int recordCount;
+    private final long[] keys;
+    private final long[] deadlines;
+    private final long[] periods;
+    private final byte[] kinds;
+    private int size= 0;
+
+    private Entries(final int recordCount) {
+      this.recordCount= recordCount;
+      this.keys= new long[recordCount];
+      this.deadlines= new long[recordCount];
+      this.periods= new long[recordCount];
+      this.kinds= new byte[recordCount];
+    }
+  }
+
+
+  /**
+   * A minimal open addressing hash map from long to non-negative int values without boxing.
+   */
+  private static final class LongIntMap {
+    private final long[] keys;
+    /** The values plus 1. A value of 0 marks an empty slot. */
+    private final int[] values;
+    private final int mask;
+
+    private LongIntMap(final int expectedSize) {
+      int capacity= 16;
+      while (capacity < expectedSize * 2L && capacity < (1 << 30)) {
+        capacity<<= 1;
+      }
+      this.keys= new long[capacity];
+      this.values= new int[capacity];
+      this.mask= capacity - 1;
+    }
+
+    private int get(final long key) {
+      int i= hash(key) & this.mask;
+      while (this.values[i] != 0) {
+        if (this.keys[i] == key) {
+          return this.values[i] - 1;
+        }
+        i= (i + 1) & this.mask;
+      }
+      return -1;
+    }
+
+    /** Puts a key that is known not to be contained in this map yet. */
+    private void put(final long key, final int value) {
+      int i= hash(key) & this.mask;
+      while (this.values[i] != 0) {
+        i= (i + 1) & this.mask;
+      }
+      this.keys[i]= key;
+      this.values[i]= value + 1;
+    }
+
+    private static int hash(final long key) {
+      final long h= key * 0x9E3779B97F4A7C15L;
+      return (int) (h ^ (h >>> 32));
+    }
+  }
+}
@@ -0,0 +1,765 @@
+package de.poiu.fez;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A store for a large number of resettable timers with minimal memory overhead per timer.
+ * <p>
+ * In contrast to {@link ResettableTimer} the timers in this store are not represented by
+ * individual objects. Instead the state of all timers is held in primitive arrays and each timer is
+ * identified by a <code>long</code> handle. When a timer expires, the {@link ExpiryHandler} of
+ * this store is called with the handle of the expired timer. This allows holding millions of
+ * timers (e.g. for idle expiry of sessions) with only a few dozen bytes per timer and without
+ * putting load on the garbage collector.
+ * <p>
+ * A handle stays valid until the timer is {@link #release(long) released}. Afterwards the slot of
+ * the timer is reused for new timers, but the old handle is not accepted anymore.
+ * <p>
+ * The expired timers are executed either by calling {@link #runExpired()} periodically or by
+ * starting the internal thread of this store via {@link #start()}. The expiry handler is always
+ * called without holding any lock of this store. It may therefore reset, cancel or release timers.
+ * <p>
+ * For mass expiry (e.g. session cleanup after a network partition) a TimerStore can be created
+ * via {@link #withBatchDispatch(int, long, java.util.concurrent.TimeUnit, de.poiu.fez.TimerStore.BatchExpiryHandler)}.
+ * Then all timers that are due in the same tick are handed over to a {@link BatchExpiryHandler}
+ * at once, optionally split into chunks that are executed on an {@link Executor}.
+ * <p>
+ * Timers can be one-shot, fixed-rate or fixed-delay timers with the same semantics as
+ * in {@link ResettableTimer}. The only difference is that a fixed-rate timer that fell behind by
+ * several periods expires only once instead of once per missed period. Like in
+ * {@link ResettableTimer} a periodic timer never expires again while the handler for its previous
+ * expiry is still running, even if the chunks of a batch are executed concurrently on an
+ * {@link Executor}.
+ * <p>
+ * This class is thread safe. All modifications are guarded by a single lock.
+ *
+ * @author mherrn
+ */
+public class TimerStore {
+  private static final FezLogger LOGGER= FezLogger.getLogger(TimerStore.class);
+
+  /**
+   * Callback for expired timers of a TimerStore.
+   */
+  @FunctionalInterface
+  public static interface ExpiryHandler {
+    /**
+     * Called when the timer with the given handle expired.
+     *
+     * @param handle the handle of the expired timer
+     */
+    public void expired(long handle);
+  }
+
+  /**
+   * Callback for a batch of expired timers of a TimerStore.
+   */
+  @FunctionalInterface
+  public static interface BatchExpiryHandler {
+    /**
+     * Called when the timers with the given handles expired.
+     * <p>
+     * The given array may be reused after this method returns and must therefore not be retained.
+     *
+     * @param handles the array containing the handles of the expired timers
+     * @param offset the index of the first handle in the array
+     * @param length the number of handles
+     */
+    public void expired(long[] handles, int offset, int length);
+  }
+
+  /** Value of {@link #heapIndexes} for allocated timers that are not scheduled. */
+  private static final int IDLE= -1;
+  /** Value of {@link #heapIndexes} for free slots. */
+  private static final int FREE= -2;
+  /** Value of {@link #heapIndexes} for periodic timers whose handler is currently running. */
+  private static final int RUNNING= -3;
+
+  private static final int DEFAULT_INITIAL_CAPACITY= 1024;
+  /** The initial size of the {@link #expiredBuffer}. */
+  private static final int INITIAL_EXPIRED_BUFFER_SIZE= 1024;
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Attributes
+
+  /** The handler for single expired timers. Null in batch mode. */
+  private final ExpiryHandler expiryHandler;
+  /** The handler for batches of expired timers. Null if not in batch mode. */
+  private final BatchExpiryHandler batchExpiryHandler;
+  /** The executor to dispatch chunks of a batch to. Null to dispatch in the calling thread. */
+  private final Executor batchExecutor;
+  private final int chunkSize;
+  /** The resolution of the internal thread. Deadlines are rounded up to a multiple of it. */
+  private final long tickNanos;
+  private final Object lock= new Object();
+
+  // the state of the timers, indexed by slot
+  /** The deadlines of the timers. For free slots this holds the next slot in the free list instead. */
+  private long[] deadlines;
+  /** The delays to use on a reset. */
+  private long[] delays;
+  /** 0 for one-shot timers, positive for fixed-rate timers, negative for fixed-delay timers. */
+  private long[] periods;
+  /** Incremented whenever a slot is released to invalidate old handles. */
+  private int[] generations;
+  /** The index of the slot in the heap, or one of {@link #IDLE}, {@link #FREE} or {@link #RUNNING}. */
+  private int[] heapIndexes;
+
+  /** Binary min-heap of the slots of scheduled timers ordered by deadline. */
+  private int[] heap;
+  private int heapSize= 0;
+
+  /** The number of slots that have ever been used. */
+  private int slotCount= 0;
+  /** The head of the free list or -1 if there are no free slots. */
+  private int freeHead= -1;
+  private int size= 0;
+
+  /**
+   * Buffer for the handles of the expired timers to dispatch. Grows to the maximum number of timers
+   * that expired at once. Only used by {@link #runExpired()}.
+   */
+  private long[] expiredBuffer= new long[INITIAL_EXPIRED_BUFFER_SIZE];
+  private final Object runLock= new Object();
+
+  /** The internal thread. Set to null to request the running thread to stop. */
+  private Thread thread;
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Constructors
+
+  /**
+   * Creates a new TimerStore.
+   *
+   * @param expiryHandler the handler to call for expired timers
+   */
+  public TimerStore(final ExpiryHandler expiryHandler) {
+    this(DEFAULT_INITIAL_CAPACITY, expiryHandler);
+  }
+
+
+  /**
+   * Creates a new TimerStore with the given initial capacity.
+   * This avoids resizing the internal arrays if the expected number of timers is known in advance.
+   *
+   * @param initialCapacity the number of timers to allocate space for
+   * @param expiryHandler the handler to call for expired timers
+   */
+  public TimerStore(final int initialCapacity, final ExpiryHandler expiryHandler) {
+    this(initialCapacity, Require.nonNull(expiryHandler, "expiryHandler may not be null"), null, null, Integer.MAX_VALUE, 0);
+  }
+
+
+  private TimerStore(final int initialCapacity,
+                     final ExpiryHandler expiryHandler,
+                     final BatchExpiryHandler batchExpiryHandler,
+                     final Executor batchExecutor,
+                     final int chunkSize,
+                     final long tickNanos) {
+    Require.isTrue(initialCapacity > 0, "initialCapacity must be positive");
+    Require.isTrue(chunkSize > 0, "chunkSize must be positive");
+    Require.isTrue(tickNanos >= 0, "tick may not be negative");
+    this.expiryHandler= expiryHandler;
+    this.batchExpiryHandler= batchExpiryHandler;
+    this.batchExecutor= batchExecutor;
+    this.chunkSize= chunkSize;
+    this.tickNanos= tickNanos;
+    this.deadlines= new long[initialCapacity];
+    this.delays= new long[initialCapacity];
+    this.periods= new long[initialCapacity];
+    this.generations= new int[initialCapacity];
+    this.heapIndexes= new int[initialCapacity];
+    this.heap= new int[initialCapacity];
+  }
+
+
+  /**
+   * Creates a new TimerStore that dispatches all timers that expire in the same tick as one batch
+   * to the given handler. The batch is dispatched in the thread calling {@link #runExpired()},
+   * which is the internal thread if it was started via {@link #start()}.
+   * <p>
+   * The internal thread wakes up at most once per tick. Therefore timers may expire up to one tick
+   * later than their deadline, but never earlier. A tick of 0 dispatches all timers that are due
+   * at the time the internal thread wakes up.
+   *
+   * @param initialCapacity the number of timers to allocate space for
+   * @param tick the resolution of the internal thread
+   * @param timeUnit the time unit of the tick
+   * @param batchExpiryHandler the handler to call for the batches of expired timers
+   * @return the new TimerStore
+   */
+  public static TimerStore withBatchDispatch(final int initialCapacity, final long tick, final TimeUnit timeUnit, final BatchExpiryHandler batchExpiryHandler) {
+    Require.nonNull(batchExpiryHandler, "batchExpiryHandler may not be null");
+    return new TimerStore(initialCapacity, null, batchExpiryHandler, null, Integer.MAX_VALUE, timeUnit.toNanos(tick));
+  }
+
+
+  /**
+   * Creates a new TimerStore that dispatches all timers that expire in the same tick as one batch
+   * to the given handler. The batch is split into chunks of at most <code>chunkSize</code> timers
+   * and each chunk is executed as one task on the given executor.
+   * <p>
+   * A periodic timer is not rescheduled before the chunk containing it has been executed.
+   *
+   * @param initialCapacity the number of timers to allocate space for
+   * @param tick the resolution of the internal thread
+   * @param timeUnit the time unit of the tick
+   * @param batchExpiryHandler the handler to call for the chunks of expired timers
+   * @param executor the executor to execute the chunks on
+   * @param chunkSize the maximum number of timers per chunk
+   * @return the new TimerStore
+   * @see #withBatchDispatch(int, long, java.util.concurrent.TimeUnit, de.poiu.fez.TimerStore.BatchExpiryHandler)
+   */
+  public static TimerStore withBatchDispatch(final int initialCapacity, final long tick, final TimeUnit timeUnit, final BatchExpiryHandler batchExpiryHandler, final Executor executor, final int chunkSize) {
+    Require.nonNull(batchExpiryHandler, "batchExpiryHandler may not be null");
+    Require.nonNull(executor, "executor may not be null");
+    return new TimerStore(initialCapacity, null, batchExpiryHandler, executor, chunkSize, timeUnit.toNanos(tick));
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Methods
+
+  /**
+   * Creates and starts a one-shot timer that expires after the given delay.
+   *
+   * @param delay the delay after which the timer expires
+   * @param timeUnit the time unit of the delay
+   * @return the handle of the new timer
+   */
+  public long schedule(final long delay, final TimeUnit timeUnit) {
+    return this.create(timeUnit.toNanos(delay), 0);
+  }
+
+
+  /**
+   * Creates and starts a fixed-rate timer that expires first after the given initial delay and
+   * subsequently with the given period.
+   * <p>
+   * If the timer fell behind by several periods (e.g. because {@link #runExpired()} was not called
+   * in time), it expires only once and the missed periods are skipped. The next expiry is then the
+   * first one of the original schedule that lies in the future.
+   *
+   * @param initialDelay the delay before the first expiry
+   * @param period the period between successive expiries
+   * @param timeUnit the time unit of the initial delay and the period
+   * @return the handle of the new timer
+   */
+  public long scheduleAtFixedRate(final long initialDelay, final long period, final TimeUnit timeUnit) {
+    Require.isTrue(period > 0, "period must be positive");
+    return this.create(timeUnit.toNanos(initialDelay), timeUnit.toNanos(period));
+  }
+
+
+  /**
+   * Creates and starts a fixed-delay timer that expires first after the given initial delay and
+   * subsequently with the given delay between the return of the expiry handler and the next expiry.
+   *
+   * @param initialDelay the delay before the first expiry
+   * @param delay the delay between the return of the expiry handler and the next expiry
+   * @param timeUnit the time unit of the initial delay and the delay
+   * @return the handle of the new timer
+   */
+  public long scheduleWithFixedDelay(final long initialDelay, final long delay, final TimeUnit timeUnit) {
+    Require.isTrue(delay > 0, "delay must be positive");
+    return this.create(timeUnit.toNanos(initialDelay), -timeUnit.toNanos(delay));
+  }
+
+
+  /**
+   * Resets the timer with the given handle. The next expiry will happen after the initial delay
+   * the timer was created with, measured from now. This can also be used to restart a cancelled or
+   * already expired timer.
+   *
+   * @param handle the handle of the timer
+   * @return false if the handle is not valid (anymore)
+   */
+  public boolean reset(final long handle) {
+    synchronized(this.lock) {
+      final int slot= this.slotOf(handle);
+      if (slot < 0) {
+        return false;
+      }
+      this.arm(slot, this.delays[slot]);
+      return true;
+    }
+  }
+
+
+  /**
+   * Resets the timer with the given handle. The next expiry will happen after the given delay,
+   * measured from now.
+   *
+   * @param handle the handle of the timer
+   * @param delay the delay until the next expiry
+   * @param timeUnit the time unit of the delay
+   * @return false if the handle is not valid (anymore)
+   */
+  public boolean reset(final long handle, final long delay, final TimeUnit timeUnit) {
+    final long delayNanos= timeUnit.toNanos(delay);
+    synchronized(this.lock) {
+      final int slot= this.slotOf(handle);
+      if (slot < 0) {
+        return false;
+      }
+      this.arm(slot, delayNanos);
+      return true;
+    }
+  }
+
+
+  /**
+   * Cancels the timer with the given handle. The handle stays valid and the timer can be restarted
+   * via {@link #reset(long)}.
+   *
+   * @param handle the handle of the timer
+   * @return false if the handle is not valid (anymore)
+   */
+  public boolean cancel(final long handle) {
+    synchronized(this.lock) {
+      final int slot= this.slotOf(handle);
+      if (slot < 0) {
+        return false;
+      }
+      this.unschedule(slot);
+      return true;
+    }
+  }
+
+
+  /**
+   * Cancels the timer with the given handle and releases its slot for reuse.
+   * The handle is invalid afterwards.
+   *
+   * @param handle the handle of the timer
+   * @return false if the handle is not valid (anymore)
+   */
+  public boolean release(final long handle) {
+    synchronized(this.lock) {
+      final int slot= this.slotOf(handle);
+      if (slot < 0) {
+        return false;
+      }
+      this.unschedule(slot);
+      this.generations[slot]++;
+      this.heapIndexes[slot]= FREE;
+      this.deadlines[slot]= this.freeHead;
+      this.freeHead= slot;
+      this.size--;
+      return true;
+    }
+  }
+
+
+  /**
+   * Returns whether the timer with the given handle is scheduled for a future expiry.
+   *
+   * @param handle the handle of the timer
+   * @return whether the timer is scheduled. False if the handle is not valid (anymore).
+   */
+  public boolean isScheduled(final long handle) {
+    synchronized(this.lock) {
+      final int slot= this.slotOf(handle);
+      return slot >= 0 && this.heapIndexes[slot] >= 0;
+    }
+  }
+
+
+  /**
+   * Returns the remaining delay until the next expiry of the timer with the given handle.
+   *
+   * @param handle the handle of the timer
+   * @param timeUnit the time unit to return the delay in
+   * @return the remaining delay or -1 if the timer is not scheduled or the handle is not valid (anymore)
+   */
+  public long getDelay(final long handle, final TimeUnit timeUnit) {
+    synchronized(this.lock) {
+      final int slot= this.slotOf(handle);
+      if (slot < 0 || this.heapIndexes[slot] < 0) {
+        return -1;
+      }
+      return timeUnit.convert(Math.max(0, this.deadlines[slot] - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+  }
+
+
+  /**
+   * Returns the number of timers in this store that have not been released.
+   *
+   * @return the number of timers in this store
+   */
+  public int size() {
+    synchronized(this.lock) {
+      return this.size;
+    }
+  }
+
+
+  /**
+   * Calls the expiry handler for all timers that are due and reschedules the periodic ones.
+   * <p>
+   * This method may be called periodically if the internal thread of this store is not used.
+   * Concurrent calls of this method are serialized.
+   *
+   * @return the number of expired timers
+   */
+  public int runExpired() {
+    synchronized(this.runLock) {
+      final int count= this.collectExpired(System.nanoTime());
+      if (this.batchExpiryHandler == null) {
+        for (int i= 0; i < count; i++) {
+          this.dispatch(this.expiredBuffer[i]);
+        }
+      } else if (count > 0) {
+        this.dispatchBatch(count);
+      }
+      return count;
+    }
+  }
+
+
+  /**
+   * Starts the internal thread of this store that calls the expiry handler when timers expire.
+   *
+   * @throws IllegalStateException if the thread is already running
+   */
+  public void start() {
+    synchronized(this.lock) {
+      if (this.thread != null) {
+        throw new IllegalStateException("Thread is already running");
+      }
+      this.thread= new NamedThreadFactory("TimerStore").newThread(new Runnable() {
+        @Override
+        public void run() {
+          runThread();
+        }
+      });
+      this.thread.start();
+    }
+  }
+
+
+  /**
+   * Stops the internal thread of this store. The timers are not cancelled and will expire
+   * when the thread is started again or {@link #runExpired()} is called.
+   */
+  public void stop() {
+    synchronized(this.lock) {
+      this.thread= null;
+      this.lock.notifyAll();
+    }
+  }
+
+
+  private void runThread() {
+    LOGGER.log(LogLevel.DEBUG, "[{0}] Thread started.", this);
+    final Thread currentThread= Thread.currentThread();
+    while (true) {
+      synchronized(this.lock) {
+        while (this.thread == currentThread) {
+          final long waitNanos= this.heapSize == 0
+            ? Long.MAX_VALUE
+            : this.roundUpToTick(this.deadlines[this.heap[0]]) - System.nanoTime();
+          if (waitNanos <= 0) {
+            break;
+          }
+          try {
+            TimeUnit.NANOSECONDS.timedWait(this.lock, waitNanos);
+          } catch (InterruptedException ex) {
+            LOGGER.log(LogLevel.DEBUG, "[{0}] Thread was interrupted.", this);
+          }
+        }
+        if (this.thread != currentThread) {
+          break;
+        }
+      }
+      this.runExpired();
+    }
+    LOGGER.log(LogLevel.DEBUG, "[{0}] Thread has ended.", this);
+  }
+
+
+  /**
+   * Removes all due timers from the heap and writes their handles into the {@link #expiredBuffer},
+   * growing it if necessary.
+   * Periodic timers are marked as {@link #RUNNING} to be rescheduled after their dispatch. For
+   * fixed-rate timers the next deadline is already calculated here.
+   *
+   * @return the number of expired timers
+   */
+  private int collectExpired(final long now) {
+    synchronized(this.lock) {
+      int count= 0;
+      while (this.heapSize > 0 && this.deadlines[this.heap[0]] - now <= 0) {
+        final int slot= this.heap[0];
+        this.removeFromHeap(slot);
+
+        if (count == this.expiredBuffer.length) {
+          this.expiredBuffer= Arrays.copyOf(this.expiredBuffer, count * 2);
+        }
+        this.expiredBuffer[count++]= this.handleOf(slot);
+
+        final long period= this.periods[slot];
+        if (period > 0) {
+          // skip all missed periods at once. The timer expires only once for all of them.
+          long next= this.deadlines[slot] + period;
+          if (next - now <= 0) {
+            next+= ((now - next) / period + 1) * period;
+          }
+          this.deadlines[slot]= next;
+        }
+        if (period != 0) {
+          this.heapIndexes[slot]= RUNNING;
+        }
+      }
+      return count;
+    }
+  }
+
+
+  private void dispatch(final long handle) {
+    try {
+      this.expiryHandler.expired(handle);
+    } catch (Throwable t) {
+      LOGGER.log(LogLevel.WARN, "Expiry handler resulted in Exception", t);
+    }
+
+    synchronized(this.lock) {
+      this.rescheduleAfterDispatch(this.slotOf(handle));
+    }
+  }
+
+
+  /**
+   * Dispatches the first <code>count</code> handles of the {@link #expiredBuffer} to the
+   * batch expiry handler, either directly or in chunks on the batch executor.
+   */
+  private void dispatchBatch(final int count) {
+    if (this.batchExecutor == null) {
+      this.dispatchChunk(this.expiredBuffer, count);
+      return;
+    }
+
+    for (int offset= 0; offset < count; offset+= this.chunkSize) {
+      final long[] chunk= Arrays.copyOfRange(this.expiredBuffer, offset, Math.min(count, offset + this.chunkSize));
+      try {
+        this.batchExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            dispatchChunk(chunk, chunk.length);
+          }
+        });
+      } catch (RejectedExecutionException ex) {
+        LOGGER.log(LogLevel.WARN, "Executor rejected a chunk of expired timers. Dispatching it in the current thread.", ex);
+        this.dispatchChunk(chunk, chunk.length);
+      }
+    }
+  }
+
+
+  private void dispatchChunk(final long[] handles, final int count) {
+    try {
+      this.batchExpiryHandler.expired(handles, 0, count);
+    } catch (Throwable t) {
+      LOGGER.log(LogLevel.WARN, "Batch expiry handler resulted in Exception", t);
+    }
+
+    synchronized(this.lock) {
+      for (int i= 0; i < count; i++) {
+        this.rescheduleAfterDispatch(this.slotOf(handles[i]));
+      }
+    }
+  }
+
+
+  /**
+   * Reschedules the given periodic slot after the handler for its expiry has returned, unless the
+   * handler did reset, cancel or release it.
+   * Must be called while holding the lock.
+   *
+   * @param slot the slot of the dispatched timer or -1 if its handle is not valid anymore
+   */
+  private void rescheduleAfterDispatch(final int slot) {
+    if (slot < 0 || this.heapIndexes[slot] != RUNNING) {
+      return;
+    }
+
+    final long period= this.periods[slot];
+    if (period < 0) {
+      this.arm(slot, -period);
+    } else {
+      // the next deadline was already calculated when collecting the timer
+      this.heapIndexes[slot]= IDLE;
+      this.addToHeap(slot);
+      if (this.heap[0] == slot) {
+        this.lock.notifyAll();
+      }
+    }
+  }
+
+
+  private long roundUpToTick(final long deadline) {
+    if (this.tickNanos <= 1) {
+      return deadline;
+    }
+    final long remainder= Math.floorMod(deadline, this.tickNanos);
+    return remainder == 0 ? deadline : deadline + (this.tickNanos - remainder);
+  }
+
+
+  private long create(final long delayNanos, final long period) {
+    synchronized(this.lock) {
+      final int slot;
+      if (this.freeHead >= 0) {
+        slot= this.freeHead;
+        this.freeHead= (int) this.deadlines[slot];
+      } else {
+        if (this.slotCount == this.deadlines.length) {
+          this.grow();
+        }
+        slot= this.slotCount++;
+      }
+
+      this.delays[slot]= delayNanos;
+      this.periods[slot]= period;
+      this.heapIndexes[slot]= IDLE;
+      this.size++;
+      this.arm(slot, delayNanos);
+      return this.handleOf(slot);
+    }
+  }
+
+
+  private void grow() {
+    final int newCapacity= (int) Math.min(Integer.MAX_VALUE - 8, this.deadlines.length * 2L);
+    if (newCapacity <= this.deadlines.length) {
+      throw new IllegalStateException("TimerStore is full");
+    }
+    this.deadlines= Arrays.copyOf(this.deadlines, newCapacity);
+    this.delays= Arrays.copyOf(this.delays, newCapacity);
+    this.periods= Arrays.copyOf(this.periods, newCapacity);
+    this.generations= Arrays.copyOf(this.generations, newCapacity);
+    this.heapIndexes= Arrays.copyOf(this.heapIndexes, newCapacity);
+    this.heap= Arrays.copyOf(this.heap, newCapacity);
+  }
+
+
+  /**
+   * (Re)schedules the given slot to expire after the given delay.
+   * Must be called while holding the lock.
+   */
+  private void arm(final int slot, final long delayNanos) {
+    this.unschedule(slot);
+    this.deadlines[slot]= System.nanoTime() + delayNanos;
+    this.addToHeap(slot);
+    if (this.heap[0] == slot) {
+      // the new deadline is the earliest one, so the thread needs to recalculate its waiting time
+      this.lock.notifyAll();
+    }
+  }
+
+
+  /**
+   * Removes the given slot from the heap if it is scheduled.
+   * Must be called while holding the lock.
+   */
+  private void unschedule(final int slot) {
+    if (this.heapIndexes[slot] >= 0) {
+      this.removeFromHeap(slot);
+    }
+    this.heapIndexes[slot]= IDLE;
+  }
+
+
+  private long handleOf(final int slot) {
+    return ((long) this.generations[slot] << 32) | slot;
+  }
+
+
+  /**
+   * Returns the slot of the given handle or -1 if the handle is invalid.
+   * Must be called while holding the lock.
+   */
+  private int slotOf(final long handle) {
+    final int slot= (int) handle;
+    if (slot < 0 || slot >= this.slotCount
+      || this.generations[slot] != (int) (handle >>> 32)
+      || this.heapIndexes[slot] == FREE) {
+      return -1;
+    }
+    return slot;
+  }
+
+
+  private void addToHeap(final int slot) {
+    this.siftUp(this.heapSize++, slot);
+  }
+
+
+  private void removeFromHeap(final int slot) {
+    final int index= this.heapIndexes[slot];
+    final int last= this.heap[--this.heapSize];
+    this.heapIndexes[slot]= IDLE;
+    if (last != slot) {
+      this.siftDown(index, last);
+      if (this.heap[index] == last) {
+        this.siftUp(index, last);
+      }
+    }
+  }
+
+
+  private void siftUp(int index, final int slot) {
+    final long deadline= this.deadlines[slot];
+    while (index > 0) {
+      final int parentIndex= (index - 1) >>> 1;
+      final int parent= this.heap[parentIndex];
+      if (deadline - this.deadlines[parent] >= 0) {
+        break;
+      }
+      this.heap[index]= parent;
+      this.heapIndexes[parent]= index;
+      index= parentIndex;
+    }
+    this.heap[index]= slot;
+    this.heapIndexes[slot]= index;
+  }
+
+
+  private void siftDown(int index, final int slot) {
+    final long deadline= this.deadlines[slot];
+    final int half= this.heapSize >>> 1;
+    while (index < half) {
+      int childIndex= (index << 1) + 1;
+      int child= this.heap[childIndex];
+      final int rightIndex= childIndex + 1;
+      if (rightIndex < this.heapSize && this.deadlines[this.heap[rightIndex]] - this.deadlines[child] < 0) {
+        childIndex= rightIndex;
+        child= this.heap[childIndex];
+      }
+      if (this.deadlines[child] - deadline >= 0) {
+        break;
+      }
+      this.heap[index]= child;
+      this.heapIndexes[child]= index;
+      index= childIndex;
+    }
+    this.heap[index]= slot;
+    this.heapIndexes[slot]= index;
+  }
+
+
+  @Override
+  public String toString() {
+    return "TimerStore@"+Integer.toHexString(System.identityHashCode(this));
+  }
+}
@@ -2,8 +2,7 @@ package de.poiu.fez;
 
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 
 /**
@@ -15,13 +14,16 @@ import java.util.logging.Logger;
  * <p>
  * Internally this class uses an {@link ArrayBlockingQueue} with a size of 1.
  * <p>
+ * Additionally listeners can be registered via {@link #addTriggerListener(java.lang.Runnable)}
+ * to get notified about each trigger event without blocking a thread.
+ * <p>
  * It was very much inspired by
  * <a href="https://stackoverflow.com/a/19381667/572645" target="_top">https://stackoverflow.com/a/19381667/572645</a>.
  *
  * @author mherrn
  */
 public class Trigger {
-  private static final Logger LOGGER= Logger.getLogger(Trigger.class.getName());
+  private static final FezLogger LOGGER= FezLogger.getLogger(Trigger.class);
 
   /////////////////////////////////////////////////////////////////////////////
   //
@@ -29,6 +31,8 @@ public class Trigger {
 
   private final BlockingQueue latch= new ArrayBlockingQueue(1);
 
+  private final CopyOnWriteArrayList<Runnable> listeners= new CopyOnWriteArrayList<>();
+
   private final String name;
 
 
@@ -41,6 +45,7 @@ public class Trigger {
    */
   public Trigger() {
     this.name= "Trigger@"+Integer.toHexString(System.identityHashCode(this));
+    FezRegistry.register(this);
   }
 
 
@@ -52,6 +57,7 @@ public class Trigger {
    */
   public Trigger(final String name) {
     this.name= "Trigger#"+name;
+    FezRegistry.register(this);
   }
 
 
@@ -63,8 +69,39 @@ public class Trigger {
    * Executes a trigger event.
    */
   public void trigger(){
-    LOGGER.log(Level.FINE, "[{0}] Triggered.", this.name);
+    LOGGER.log(LogLevel.DEBUG, "[{0}] Triggered.", this.name);
     latch.offer(Boolean.TRUE);
+    for (final Runnable listener : listeners) {
+      try {
+        listener.run();
+      } catch (RuntimeException ex) {
+        LOGGER.log(LogLevel.WARN, "Trigger listener resulted in Exception", ex);
+      }
+    }
+  }
+
+
+  /**
+   * Adds a listener that is called on each trigger event.
+   * <p>
+   * The listener is called synchronously by the thread calling {@link #trigger()} and should
+   * therefore return quickly. Listeners are called independently of {@link #waitForTrigger()},
+   * i.e. they do not consume the trigger event.
+   *
+   * @param listener the listener to add
+   */
+  public void addTriggerListener(final Runnable listener) {
+    listeners.add(Require.nonNull(listener, "listener may not be null"));
+  }
+
+
+  /**
+   * Removes a listener that was added via {@link #addTriggerListener(java.lang.Runnable)}.
+   *
+   * @param listener the listener to remove
+   */
+  public void removeTriggerListener(final Runnable listener) {
+    listeners.remove(listener);
   }
 
 
@@ -74,9 +111,19 @@ public class Trigger {
    * @throws InterruptedException
    */
   public void waitForTrigger() throws InterruptedException{
-    LOGGER.log(Level.FINE, "[{0}] Waiting for trigger.", this.name);
+    LOGGER.log(LogLevel.DEBUG, "[{0}] Waiting for trigger.", this.name);
     latch.take();
-    LOGGER.log(Level.FINE, "[{0}] Trigger received.", this.name);
+    LOGGER.log(LogLevel.DEBUG, "[{0}] Trigger received.", this.name);
+  }
+
+
+  /**
+   * Returns whether a trigger event occurred that was not yet consumed by {@link #waitForTrigger()}.
+   *
+   * @return whether a trigger event is pending
+   */
+  public boolean isTriggerPending() {
+    return !latch.isEmpty();
   }
 
 
@@ -0,0 +1,281 @@
+package de.poiu.fez;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * A map of {@link Trigger}s for a large number of keys.
+ * <p>
+ * Each key behaves like its own {@link Trigger}: {@link #waitForTrigger(java.lang.Object)} blocks
+ * until {@link #trigger(java.lang.Object)} is called for the same key. If <code>trigger()</code> is
+ * called while nobody is waiting for that key, the trigger event stays pending and the next call of
+ * <code>waitForTrigger()</code> for that key returns immediately. Multiple trigger events while
+ * nobody is waiting are coalesced into one pending event.
+ * <p>
+ * Other than a map of {@link Trigger} objects this class only stores the keys that either have a
+ * pending trigger event or a waiting thread. The state of all other keys needs no memory at all.
+ * The keys are distributed over a fixed number of stripes, each guarded by its own lock. The
+ * objects needed for waiting are only allocated while a thread actually waits. Only the hash
+ * tables of the stripes keep the capacity needed for the maximum number of keys held at the same
+ * time.
+ * <p>
+ * The keys must implement {@link Object#hashCode()} and {@link Object#equals(java.lang.Object)}
+ * consistently and must not be <code>null</code>.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author mherrn
+ * @param <K> the type of the keys
+ */
+public class TriggerMap<K> {
+  private static final FezLogger LOGGER= FezLogger.getLogger(TriggerMap.class);
+
+  /** Marks a key with a pending trigger event and no waiting threads. */
+  private static final Object PENDING= new Object();
+
+  private static final int MAX_STRIPES= 1 << 16;
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Attributes
+
+  private final Stripe[] stripes;
+  private final int mask;
+  private final String name;
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Constructors
+
+  /**
+   * Creates a new TriggerMap with a number of stripes suitable for the number of available
+   * processors.
+   */
+  public TriggerMap() {
+    this(Runtime.getRuntime().availableProcessors() * 4);
+  }
+
+
+  /**
+   * Creates a new TriggerMap with the given number of stripes.
+   * <p>
+   * The number of stripes is rounded up to the next power of two.
+   *
+   * @param concurrencyLevel the number of stripes, i.e. the number of threads that can access the
+   *                         map without contention
+   */
+  public TriggerMap(final int concurrencyLevel) {
+    Require.isTrue(concurrencyLevel > 0, "concurrencyLevel must be positive");
+    int stripeCount= 1;
+    while (stripeCount < concurrencyLevel && stripeCount < MAX_STRIPES) {
+      stripeCount<<= 1;
+    }
+
+    this.stripes= new Stripe[stripeCount];
+    for (int i= 0; i < stripeCount; i++) {
+      this.stripes[i]= new Stripe();
+    }
+    this.mask= stripeCount - 1;
+    this.name= "TriggerMap@"+Integer.toHexString(System.identityHashCode(this));
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Methods
+
+  /**
+   * Executes a trigger event for the given key.
+   * <p>
+   * If threads are waiting for this key, one of them is woken up. Otherwise the event stays pending
+   * until the next call of {@link #waitForTrigger(java.lang.Object)} for this key.
+   *
+   * @param key the key to trigger
+   */
+  public void trigger(final K key) {
+    Require.nonNull(key, "key may not be null");
+    LOGGER.log(LogLevel.TRACE, "[{0}] Triggered {1}.", this.name, key);
+
+    final Stripe stripe= this.stripeFor(key);
+    stripe.lock.lock();
+    try {
+      final Object state= stripe.states.get(key);
+      if (state == null) {
+        stripe.states.put(key, PENDING);
+      } else if (state != PENDING) {
+        final Waiter waiter= (Waiter) state;
+        if (waiter.signals < waiter.waiting) {
+          waiter.signals++;
+          waiter.condition.signal();
+        } else {
+          // all waiting threads are already woken up
+          waiter.pending= true;
+        }
+      }
+    } finally {
+      stripe.lock.unlock();
+    }
+  }
+
+
+  /**
+   * Waits for the next trigger event for the given key.
+   * <p>
+   * Returns immediately if a trigger event for this key is pending.
+   *
+   * @param key the key to wait for
+   * @throws InterruptedException if the current thread was interrupted while waiting
+   */
+  public void waitForTrigger(final K key) throws InterruptedException {
+    Require.nonNull(key, "key may not be null");
+
+    final Stripe stripe= this.stripeFor(key);
+    stripe.lock.lockInterruptibly();
+    try {
+      final Object state= stripe.states.get(key);
+      if (state == PENDING) {
+        stripe.states.remove(key);
+        return;
+      }
+
+      final Waiter waiter;
+      if (state == null) {
+        waiter= new Waiter(stripe.lock.newCondition());
+        stripe.states.put(key, waiter);
+      } else {
+        waiter= (Waiter) state;
+        if (waiter.pending) {
+          waiter.pending= false;
+          return;
+        }
+      }
+
+      LOGGER.log(LogLevel.TRACE, "[{0}] Waiting for trigger of {1}.", this.name, key);
+      waiter.waiting++;
+      try {
+        while (waiter.signals == 0) {
+          waiter.condition.await();
+        }
+        waiter.signals--;
+        waiter.waiting--;
+      } catch (InterruptedException ex) {
+        waiter.waiting--;
+        if (waiter.signals > waiter.waiting) {
+          // we were woken up and interrupted at the same time. Pass on the trigger event.
+          if (waiter.waiting > 0) {
+            waiter.condition.signal();
+          } else {
+            waiter.signals--;
+            waiter.pending= true;
+          }
+        }
+        throw ex;
+      } finally {
+        if (waiter.waiting == 0) {
+          if (waiter.pending) {
+            stripe.states.put(key, PENDING);
+          } else {
+            stripe.states.remove(key);
+          }
+        }
+      }
+      LOGGER.log(LogLevel.TRACE, "[{0}] Trigger of {1} received.", this.name, key);
+    } finally {
+      stripe.lock.unlock();
+    }
+  }
+
+
+  /**
+   * Returns whether a trigger event for the given key occurred that was not yet consumed by
+   * {@link #waitForTrigger(java.lang.Object)}.
+   *
+   * @param key the key to check
+   * @return whether a trigger event is pending for the key
+   */
+  public boolean isTriggerPending(final K key) {
+    Require.nonNull(key, "key may not be null");
+
+    final Stripe stripe= this.stripeFor(key);
+    stripe.lock.lock();
+    try {
+      final Object state= stripe.states.get(key);
+      return state == PENDING || (state != null && ((Waiter) state).pending);
+    } finally {
+      stripe.lock.unlock();
+    }
+  }
+
+
+  /**
+   * Returns the number of keys that currently have a pending trigger event or waiting threads.
+   * <p>
+   * The stripes are counted one after the other, so the result is only a snapshot if the map is
+   * modified concurrently.
+   *
+   * @return the number of keys currently held in this map
+   */
+  public int size() {
+    int size= 0;
+    for (final Stripe stripe : this.stripes) {
+      stripe.lock.lock();
+      try {
+        size+= stripe.states.size();
+      } finally {
+        stripe.lock.unlock();
+      }
+    }
+    return size;
+  }
+
+
+  private Stripe stripeFor(final Object key) {
+    final int h= key.hashCode() * 0x9E3779B9;
+    return this.stripes[(h ^ (h >>> 16)) & this.mask];
+  }
+
+
+  @Override
+  public String toString() {
+    return this.name;
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Inner classes
+
+  /**
+   * A part of the keys with its own lock.
+   * <p>
+   * The value of each key is either {@link #PENDING} or a {@link Waiter}.
+   */
+  private static final class Stripe {
+    private final ReentrantLock lock= new ReentrantLock();
+    private final Map<Object, Object> states= new HashMap<>();
+  }
+
+
+  /**
+   * The threads waiting for a single key. Only accessed while holding the lock of the stripe.
+   */
+  private static final class Waiter {
+    private final Condition condition;
+    /** The number of waiting threads. */
+    private int waiting;
+    /** The number of trigger events handed over to waiting threads that did not consume them yet. */
+    private int signals;
+    /** Whether a trigger event occurred while all waiting threads were already woken up. */
+    private boolean pending;
+
+
+    private Waiter(final Condition condition) {
+      this.condition= condition;
+    }
+  }
+}
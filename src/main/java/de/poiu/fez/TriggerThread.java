@@ -1,8 +1,5 @@
 package de.poiu.fez;
 
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
 
 /**
  * Ein Trigger mit Thread zur Ausführung einer vorgegebenen Aktion bei jedem
@@ -15,7 +12,7 @@ import java.util.logging.Logger;
  */
 //FIXME: This class isn't tested well. If tested and working make it public
 class TriggerThread {
-  private static final Logger LOGGER= Logger.getLogger(TriggerThread.class.getName());
+  private static final FezLogger LOGGER= FezLogger.getLogger(TriggerThread.class);
 
   /////////////////////////////////////////////////////////////////////////////
   //
@@ -24,7 +21,7 @@ class TriggerThread {
   private final Trigger trigger= new Trigger();
 
   /** Wird auf true gesetzt, wenn ein Stoppen des Threads gewünscht ist. */
-  private boolean stopRequested= false;
+  private volatile boolean stopRequested= false;
 
   /** Das Runnable das beim Triggern aufgerufen wird. */
   private final Runnable triggerListener;
@@ -35,25 +32,25 @@ class TriggerThread {
   private final Runnable triggerThreadRunnable= new Runnable() {
     @Override
     public void run() {
-      LOGGER.log(Level.FINE, "Thread {0} is started", threadName);
+      LOGGER.log(LogLevel.DEBUG, "Thread {0} is started", threadName);
       while (!stopRequested) {
         try {
-          LOGGER.log(Level.FINEST, "Thread {0} is waiting for trigger", threadName);
+          LOGGER.log(LogLevel.TRACE, "Thread {0} is waiting for trigger", threadName);
           trigger.waitForTrigger();
           //wurde beim Warten auf den Trigger das Beenden verlangt, beende hier
           if (stopRequested) {
             return;
           }
 
-          LOGGER.log(Level.FINEST, "Thread {0} was triggered", threadName);
+          LOGGER.log(LogLevel.TRACE, "Thread {0} was triggered", threadName);
 
           //führe die eigentliche Aktion aus
           triggerListener.run();
         } catch (InterruptedException ex) {
-          LOGGER.log(Level.FINE, "Thread {0} was interrupted", threadName);
+          LOGGER.log(LogLevel.DEBUG, "Thread {0} was interrupted", threadName);
         }
       }
-      LOGGER.log(Level.FINE, "Thread {0} has ended", threadName);
+      LOGGER.log(LogLevel.DEBUG, "Thread {0} has ended", threadName);
     }
   };
   private Thread triggerThread;
@@ -101,7 +98,7 @@ class TriggerThread {
         throw new IllegalStateException("Thread is already running");
       }
 
-      LOGGER.log(Level.FINER, "Start of Thread {0} requested", threadName);
+      LOGGER.log(LogLevel.DEBUG, "Start of Thread {0} requested", threadName);
 
       this.stopRequested= false;
       this.triggerThread= this.createNewThread();
@@ -115,7 +112,7 @@ class TriggerThread {
    */
   public void stop() {
     synchronized(this) {
-      LOGGER.log(Level.FINER, "Stop of Thread {0} requested", threadName);
+      LOGGER.log(LogLevel.DEBUG, "Stop of Thread {0} requested", threadName);
 
       this.stopRequested= true;
       this.trigger.trigger();
@@ -130,4 +127,15 @@ class TriggerThread {
   public void trigger() {
     this.trigger.trigger();
   }
+
+
+  /**
+   * Liefert den aktuell laufenden Thread.
+   * @return der aktuell laufende Thread oder null, wenn dieser Thread nicht gestartet ist
+   */
+  Thread getThread() {
+    synchronized(this) {
+      return this.triggerThread;
+    }
+  }
 }
@@ -0,0 +1,219 @@
+package de.poiu.fez;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A watchdog for the executions of a {@link ResettableTimer}.
+ * <p>
+ * A watchdog defines an execution-time budget for each single execution of the task of a timer.
+ * If an execution exceeds this budget, the overrun is recorded (see
+ * {@link ResettableTimer#getOverrunCount()} and {@link FezRegistry.TimerInfo#getOverrunCount()}),
+ * logged, reported to the {@link OverrunListener} of the watchdog (if any) and the watchdog reacts
+ * according to its {@link OverrunPolicy}.
+ * <p>
+ * All timers with a watchdog are monitored by one shared monitor thread. No additional thread is
+ * created per timer.
+ * <p>
+ * Example for a flush task that must not take longer than 500 ms:
+ * <p>
+ * <pre>
+ * ResettableTimer.createScheduleAtFixedRate(0, 1, TimeUnit.SECONDS, flushTask, "flush")
+ *   .withWatchdog(Watchdog.interrupt(500, TimeUnit.MILLISECONDS))
+ *   .start();
+ * </pre>
+ *
+ * Instances of this class are immutable.
+ *
+ * @author mherrn
+ */
+public final class Watchdog {
+
+  /**
+   * The reaction of a watchdog on an execution exceeding its budget.
+   */
+  public static enum OverrunPolicy {
+    /**
+     * Let the execution continue, but skip the ticks of a fixed-rate timer that became due while
+     * the execution was running instead of executing them back to back afterwards.
+     */
+    SKIP_OVERLAPPING,
+    /**
+     * Interrupt the thread running the execution. The task must react on interruption for this to
+     * have any effect.
+     */
+    INTERRUPT,
+    /**
+     * Let the execution continue, but execute the ticks of a periodic timer that become due while
+     * the execution is still running on a fallback executor. The ticks that were executed on the
+     * fallback executor are skipped after the overrunning execution has finished.
+     * <p>
+     * With this policy the task may be executed concurrently and must therefore be thread safe.
+     */
+    FALLBACK_EXECUTOR,
+    ;
+  }
+
+
+  /**
+   * Callback for executions exceeding the budget of a watchdog.
+   */
+  @FunctionalInterface
+  public static interface OverrunListener {
+    /**
+     * Called once per overrunning execution as soon as the overrun is detected.
+     * <p>
+     * This method is called either by the shared monitor thread while the execution is still
+     * running or by the thread of the timer after the execution has finished. It must therefore
+     * return quickly and must not block.
+     *
+     * @param timer the timer whose execution exceeded the budget
+     * @param elapsedNanos the duration of the execution in nanoseconds at the time the overrun was detected
+     */
+    public void overrun(ResettableTimer timer, long elapsedNanos);
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Attributes
+
+  private final long budgetNanos;
+  private final OverrunPolicy policy;
+  private final Executor fallbackExecutor;
+  private final OverrunListener listener;
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Constructors
+
+  private Watchdog(final long budgetNanos, final OverrunPolicy policy, final Executor fallbackExecutor, final OverrunListener listener) {
+    this.budgetNanos= budgetNanos;
+    this.policy= policy;
+    this.fallbackExecutor= fallbackExecutor;
+    this.listener= listener;
+  }
+
+
+  /**
+   * Returns a watchdog that records overruns and skips the ticks of a fixed-rate timer that
+   * overlap with an overrunning execution.
+   *
+   * @param budget the maximum duration of a single execution
+   * @param timeUnit the time unit of the budget
+   * @return the new watchdog
+   * @see OverrunPolicy#SKIP_OVERLAPPING
+   */
+  public static Watchdog skipOverlapping(final long budget, final TimeUnit timeUnit) {
+    return new Watchdog(toBudgetNanos(budget, timeUnit), OverrunPolicy.SKIP_OVERLAPPING, null, null);
+  }
+
+
+  /**
+   * Returns a watchdog that records overruns and interrupts overrunning executions.
+   *
+   * @param budget the maximum duration of a single execution
+   * @param timeUnit the time unit of the budget
+   * @return the new watchdog
+   * @see OverrunPolicy#INTERRUPT
+   */
+  public static Watchdog interrupt(final long budget, final TimeUnit timeUnit) {
+    return new Watchdog(toBudgetNanos(budget, timeUnit), OverrunPolicy.INTERRUPT, null, null);
+  }
+
+
+  /**
+   * Returns a watchdog that records overruns and executes the ticks that become due during an
+   * overrunning execution on the given executor.
+   *
+   * @param budget the maximum duration of a single execution
+   * @param timeUnit the time unit of the budget
+   * @param fallbackExecutor the executor to execute the ticks on while an execution overruns
+   * @return the new watchdog
+   * @see OverrunPolicy#FALLBACK_EXECUTOR
+   */
+  public static Watchdog fallbackExecutor(final long budget, final TimeUnit timeUnit, final Executor fallbackExecutor) {
+    Require.nonNull(fallbackExecutor, "fallbackExecutor may not be null");
+    return new Watchdog(toBudgetNanos(budget, timeUnit), OverrunPolicy.FALLBACK_EXECUTOR, fallbackExecutor, null);
+  }
+
+
+  private static long toBudgetNanos(final long budget, final TimeUnit timeUnit) {
+    Require.isTrue(budget > 0, "budget must be positive");
+    Require.nonNull(timeUnit, "timeUnit may not be null");
+    return timeUnit.toNanos(budget);
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Methods
+
+  /**
+   * Returns a copy of this watchdog that reports overruns to the given listener.
+   *
+   * @param listener the listener to report overruns to or <code>null</code> to not report them
+   * @return the new watchdog
+   */
+  public Watchdog withListener(final OverrunListener listener) {
+    return new Watchdog(this.budgetNanos, this.policy, this.fallbackExecutor, listener);
+  }
+
+
+  /**
+   * Returns the execution-time budget of this watchdog.
+   *
+   * @param timeUnit the time unit to return the budget in
+   * @return the maximum duration of a single execution
+   */
+  public long getBudget(final TimeUnit timeUnit) {
+    return timeUnit.convert(this.budgetNanos, TimeUnit.NANOSECONDS);
+  }
+
+
+  /**
+   * Returns the reaction of this watchdog on an overrun.
+   *
+   * @return the overrun policy of this watchdog
+   */
+  public OverrunPolicy getPolicy() {
+    return this.policy;
+  }
+
+
+  long getBudgetNanos() {
+    return this.budgetNanos;
+  }
+
+
+  /**
+   * Returns the fallback executor.
+   *
+   * @return the fallback executor or <code>null</code> if the policy is not
+   *         {@link OverrunPolicy#FALLBACK_EXECUTOR}
+   */
+  Executor getFallbackExecutor() {
+    return this.fallbackExecutor;
+  }
+
+
+  /**
+   * Returns the listener to report overruns to.
+   *
+   * @return the overrun listener or <code>null</code> if overruns are not reported
+   */
+  OverrunListener getListener() {
+    return this.listener;
+  }
+
+
+  @Override
+  public String toString() {
+    return "Watchdog{"
+      + "budget=" + TimeUnit.NANOSECONDS.toMillis(this.budgetNanos) + "ms"
+      + ", policy=" + this.policy
+      + '}';
+  }
+}
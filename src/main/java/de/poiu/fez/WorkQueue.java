@@ -0,0 +1,414 @@
+package de.poiu.fez;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * A bounded queue for passing work from multiple producers to a single consumer.
+ * <p>
+ * This is the data carrying counterpart of a {@link Trigger}. Producers put elements into the queue
+ * via {@link #put(java.lang.Object)} and the consumer waits for them via {@link #take()} or, to
+ * process them in batches, via {@link #awaitDrainTo(java.util.Collection, int)}.
+ * <p>
+ * The queue is a lock-free ring buffer. The consumer is only woken up when it waits for an empty
+ * queue. As long as the consumer is busy, producers only pay a single volatile read for the
+ * signalling, regardless of how many elements they put into the queue.
+ * <p>
+ * What happens when the queue is full depends on the {@link OverflowPolicy} given on creation.
+ * <p>
+ * Any number of threads may put elements into the queue concurrently, but only one thread at a
+ * time may take elements from it.
+ *
+ * @author mherrn
+ * @param <E> the type of the elements
+ */
+public class WorkQueue<E> {
+  private static final FezLogger LOGGER= FezLogger.getLogger(WorkQueue.class);
+
+  /**
+   * The behaviour of {@link WorkQueue#put(java.lang.Object)} when the queue is full.
+   */
+  public static enum OverflowPolicy {
+    /** Wait until the consumer has taken an element from the queue. */
+    BLOCK,
+    /** Discard the new element and return <code>false</code>. */
+    DROP,
+    /** Throw an {@link IllegalStateException}. */
+    REJECT,
+    ;
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Attributes
+
+  private final Object[] buffer;
+  /**
+   * The sequence of each slot of the buffer. A slot can be written by the producer of the element
+   * with index <code>i</code> if its sequence is <code>i</code> and read by the consumer if its
+   * sequence is <code>i + 1</code>.
+   */
+  private final AtomicLongArray sequences;
+  private final int mask;
+  private final OverflowPolicy policy;
+  private final String name;
+
+  /** The index of the next element to put. */
+  private final AtomicLong tail= new AtomicLong();
+  /** The index of the next element to take. Only written by the consumer. */
+  private volatile long head= 0;
+
+  private volatile Thread consumer;
+  private final AtomicBoolean consumerWaiting= new AtomicBoolean(false);
+
+  // only used by producers waiting for free space with OverflowPolicy.BLOCK
+  private final ReentrantLock producerLock= new ReentrantLock();
+  private final Condition notFull= producerLock.newCondition();
+  private volatile int producersWaiting= 0;
+
+  private final AtomicLong droppedCount= new AtomicLong();
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Constructors
+
+  /**
+   * Creates a new WorkQueue.
+   * <p>
+   * The capacity is rounded up to the next power of two.
+   *
+   * @param capacity the maximum number of elements in the queue
+   * @param policy the behaviour when the queue is full
+   */
+  public WorkQueue(final int capacity, final OverflowPolicy policy) {
+    this(capacity, policy, null);
+  }
+
+
+  /**
+   * Creates a new WorkQueue with the given name. The name is only used in logging statements.
+   * <p>
+   * The capacity is rounded up to the next power of two.
+   *
+   * @param capacity the maximum number of elements in the queue
+   * @param policy the behaviour when the queue is full
+   * @param name the name of this WorkQueue or <code>null</code>
+   */
+  public WorkQueue(final int capacity, final OverflowPolicy policy, final String name) {
+    Require.isTrue(capacity > 0 && capacity <= 1 << 30, "capacity must be between 1 and 2^30");
+    this.policy= Require.nonNull(policy, "policy may not be null");
+
+    int size= 1;
+    while (size < capacity) {
+      size<<= 1;
+    }
+    this.buffer= new Object[size];
+    this.sequences= new AtomicLongArray(size);
+    for (int i= 0; i < size; i++) {
+      this.sequences.set(i, i);
+    }
+    this.mask= size - 1;
+    this.name= name != null ? "WorkQueue#"+name : "WorkQueue@"+Integer.toHexString(System.identityHashCode(this));
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Methods
+
+  /**
+   * Puts the given element into the queue.
+   * <p>
+   * If the queue is full, the behaviour depends on the {@link OverflowPolicy} of this queue.
+   *
+   * @param element the element to put into the queue
+   * @return <code>true</code> if the element was put into the queue, <code>false</code> if it
+   *         was dropped
+   * @throws IllegalStateException if the queue is full and the policy is {@link OverflowPolicy#REJECT}
+   * @throws InterruptedException if the current thread was interrupted while waiting for free space
+   */
+  public boolean put(final E element) throws InterruptedException {
+    if (this.offer(element)) {
+      return true;
+    }
+
+    switch (this.policy) {
+      case BLOCK:
+        this.awaitNotFullAndPut(element);
+        return true;
+      case DROP:
+        this.droppedCount.incrementAndGet();
+        LOGGER.log(LogLevel.TRACE, "[{0}] Queue is full. Dropping element.", this.name);
+        return false;
+      case REJECT:
+        throw new IllegalStateException(this.name+" is full");
+      default:
+        throw new IllegalStateException("Unexpected OverflowPolicy: "+this.policy);
+    }
+  }
+
+
+  /**
+   * Puts the given element into the queue if it is not full.
+   * <p>
+   * This method never blocks and ignores the {@link OverflowPolicy} of this queue.
+   *
+   * @param element the element to put into the queue
+   * @return whether the element was put into the queue
+   */
+  public boolean offer(final E element) {
+    Require.nonNull(element, "element may not be null");
+
+    long index;
+    while (true) {
+      index= this.tail.get();
+      final long diff= this.sequences.get((int) index & this.mask) - index;
+      if (diff == 0) {
+        if (this.tail.compareAndSet(index, index + 1)) {
+          break;
+        }
+      } else if (diff < 0) {
+        // the consumer has not yet taken the element of the previous round
+        return false;
+      }
+      // otherwise another producer has claimed that slot in the meantime
+    }
+
+    final int slot= (int) index & this.mask;
+    this.buffer[slot]= element;
+    // a volatile write (instead of lazySet) is needed, so that it can't be reordered with the
+    // following read of consumerWaiting
+    this.sequences.set(slot, index + 1);
+
+    if (this.consumerWaiting.get() && this.consumerWaiting.compareAndSet(true, false)) {
+      LockSupport.unpark(this.consumer);
+    }
+    return true;
+  }
+
+
+  private void awaitNotFullAndPut(final E element) throws InterruptedException {
+    this.producerLock.lockInterruptibly();
+    try {
+      this.producersWaiting++;
+      try {
+        // check again after announcing ourselves to not miss the signal of the consumer
+        while (!this.offer(element)) {
+          this.notFull.await();
+        }
+      } finally {
+        this.producersWaiting--;
+      }
+    } finally {
+      this.producerLock.unlock();
+    }
+  }
+
+
+  /**
+   * Takes the next element from the queue.
+   *
+   * @return the next element or <code>null</code> if the queue is empty
+   */
+  public E poll() {
+    final E element= this.pollElement();
+    if (element != null) {
+      this.signalNotFull();
+    }
+    return element;
+  }
+
+
+  /**
+   * Takes the next element from the queue and waits for it if the queue is empty.
+   *
+   * @return the next element
+   * @throws InterruptedException if the current thread was interrupted while waiting
+   */
+  public E take() throws InterruptedException {
+    E element;
+    while ((element= this.poll()) == null) {
+      this.awaitNotEmpty();
+    }
+    return element;
+  }
+
+
+  /**
+   * Takes all available elements from the queue and adds them to the given collection.
+   *
+   * @param collection the collection to add the elements to
+   * @return the number of elements taken from the queue
+   */
+  public int drainTo(final Collection<? super E> collection) {
+    return this.drainTo(collection, Integer.MAX_VALUE);
+  }
+
+
+  /**
+   * Takes up to <code>maxElements</code> available elements from the queue and adds them to the
+   * given collection.
+   *
+   * @param collection the collection to add the elements to
+   * @param maxElements the maximum number of elements to take
+   * @return the number of elements taken from the queue
+   */
+  public int drainTo(final Collection<? super E> collection, final int maxElements) {
+    Require.nonNull(collection, "collection may not be null");
+
+    int count= 0;
+    E element;
+    while (count < maxElements && (element= this.pollElement()) != null) {
+      collection.add(element);
+      count++;
+    }
+
+    if (count > 0) {
+      this.signalNotFull();
+    }
+    return count;
+  }
+
+
+  /**
+   * Waits until the queue is not empty and then takes up to <code>maxElements</code> available
+   * elements from the queue and adds them to the given collection.
+   *
+   * @param collection the collection to add the elements to
+   * @param maxElements the maximum number of elements to take, at least 1
+   * @return the number of elements taken from the queue, at least 1
+   * @throws InterruptedException if the current thread was interrupted while waiting
+   */
+  public int awaitDrainTo(final Collection<? super E> collection, final int maxElements) throws InterruptedException {
+    Require.isTrue(maxElements > 0, "maxElements must be positive");
+
+    int count;
+    while ((count= this.drainTo(collection, maxElements)) == 0) {
+      this.awaitNotEmpty();
+    }
+    return count;
+  }
+
+
+  /**
+   * Returns the number of elements in the queue.
+   * <p>
+   * The result is only a snapshot if the queue is modified concurrently.
+   *
+   * @return the number of elements in the queue
+   */
+  public int size() {
+    final long head= this.head;
+    final long size= this.tail.get() - head;
+    return (int) Math.max(0, Math.min(size, this.buffer.length));
+  }
+
+
+  /**
+   * Returns whether the queue is empty.
+   *
+   * @return whether the next element is not yet available
+   */
+  public boolean isEmpty() {
+    final long index= this.head;
+    return this.sequences.get((int) index & this.mask) != index + 1;
+  }
+
+
+  /**
+   * Returns the maximum number of elements in the queue.
+   *
+   * @return the capacity of the queue
+   */
+  public int getCapacity() {
+    return this.buffer.length;
+  }
+
+
+  /**
+   * Returns the behaviour of this queue when it is full.
+   *
+   * @return the overflow policy
+   */
+  public OverflowPolicy getPolicy() {
+    return this.policy;
+  }
+
+
+  /**
+   * Returns the number of elements that were dropped because the queue was full.
+   *
+   * @return the number of dropped elements
+   * @see OverflowPolicy#DROP
+   */
+  public long getDroppedCount() {
+    return this.droppedCount.get();
+  }
+
+
+  /**
+   * Takes the next element without signalling waiting producers.
+   *
+   * @return the next element or <code>null</code> if the queue is empty
+   */
+  @SuppressWarnings("unchecked")
+  private E pollElement() {
+    final long index= this.head;
+    final int slot= (int) index & this.mask;
+    if (this.sequences.get(slot) != index + 1) {
+      return null;
+    }
+
+    final E element= (E) this.buffer[slot];
+    this.buffer[slot]= null;
+    this.sequences.lazySet(slot, index + this.buffer.length);
+    this.head= index + 1;
+    return element;
+  }
+
+
+  private void awaitNotEmpty() throws InterruptedException {
+    this.consumer= Thread.currentThread();
+    try {
+      while (this.isEmpty()) {
+        this.consumerWaiting.set(true);
+        // check again after announcing ourselves to not miss the wakeup of a producer
+        if (!this.isEmpty()) {
+          break;
+        }
+        LockSupport.park(this);
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+      }
+    } finally {
+      this.consumerWaiting.set(false);
+    }
+  }
+
+
+  private void signalNotFull() {
+    if (this.producersWaiting > 0) {
+      this.producerLock.lock();
+      try {
+        this.notFull.signalAll();
+      } finally {
+        this.producerLock.unlock();
+      }
+    }
+  }
+
+
+  @Override
+  public String toString() {
+    return this.name;
+  }
+}
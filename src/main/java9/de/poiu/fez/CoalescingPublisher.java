@@ -0,0 +1,222 @@
+package de.poiu.fez;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A {@link Flow.Publisher} of events that respects the demand of its subscribers by coalescing
+ * events instead of buffering them.
+ * <p>
+ * Each call of {@link #signal()} (or {@link #run()}) is an event. If a subscriber has outstanding
+ * demand, the event is emitted immediately. Otherwise the event is remembered and emitted as soon as
+ * the subscriber requests more items. All events that occur while a subscriber has no demand are
+ * coalesced into one item. The emitted item is the number of events coalesced into it. Therefore
+ * the memory needed per subscriber is constant, regardless of how slow the subscriber is.
+ * <p>
+ * Since this class implements {@link Runnable} it can directly be used as the task of a
+ * {@link ResettableTimer} to publish the ticks of that timer:
+ * <p>
+ * <pre>
+ * final CoalescingPublisher ticks= new CoalescingPublisher();
+ * ResettableTimer.createScheduleAtFixedRate(0, 1, TimeUnit.SECONDS, ticks).start();
+ * ticks.subscribe(subscriber);
+ * </pre>
+ *
+ * Use {@link FlowAdapters#fromTrigger(de.poiu.fez.Trigger)} to publish the events of a {@link Trigger}.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author mherrn
+ */
+public class CoalescingPublisher implements Flow.Publisher<Long>, Runnable {
+  private static final FezLogger LOGGER= FezLogger.getLogger(CoalescingPublisher.class);
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Attributes
+
+  private final CopyOnWriteArrayList<CoalescingSubscription> subscriptions= new CopyOnWriteArrayList<>();
+  private volatile boolean closed= false;
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Constructors
+
+  /**
+   * Creates a new CoalescingPublisher.
+   */
+  public CoalescingPublisher() {
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Methods
+
+  @Override
+  public void subscribe(final Flow.Subscriber<? super Long> subscriber) {
+    Require.nonNull(subscriber, "subscriber may not be null");
+    final CoalescingSubscription subscription= new CoalescingSubscription(subscriber);
+    subscriber.onSubscribe(subscription);
+    this.subscriptions.add(subscription);
+    if (this.closed) {
+      subscription.complete();
+    }
+  }
+
+
+  /**
+   * Publishes an event to all subscribers.
+   */
+  public void signal() {
+    for (final CoalescingSubscription subscription : this.subscriptions) {
+      subscription.signal();
+    }
+  }
+
+
+  /**
+   * Publishes an event to all subscribers.
+   * This is the same as {@link #signal()}.
+   */
+  @Override
+  public void run() {
+    this.signal();
+  }
+
+
+  /**
+   * Closes this publisher. All current and future subscribers receive
+   * {@link Flow.Subscriber#onComplete()} after they have received the events they have demanded.
+   * Events that were not demanded anymore are discarded.
+   */
+  public void close() {
+    if (this.closed) {
+      return;
+    }
+    this.closed= true;
+
+    for (final CoalescingSubscription subscription : this.subscriptions) {
+      subscription.complete();
+    }
+  }
+
+
+  /**
+   * Returns the number of current subscribers.
+   *
+   * @return the number of current subscribers
+   */
+  public int getSubscriberCount() {
+    return this.subscriptions.size();
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Inner classes
+
+  /**
+   * The subscription of a single subscriber.
+   * <p>
+   * All signals to the subscriber are emitted from {@link #drain()}, which is serialized via
+   * {@link #wip} so that the subscriber is never called concurrently.
+   */
+  private final class CoalescingSubscription implements Flow.Subscription {
+    private final Flow.Subscriber<? super Long> subscriber;
+    private final AtomicLong requested= new AtomicLong();
+    /** The number of events that were not emitted yet. */
+    private final AtomicLong pending= new AtomicLong();
+    private final AtomicInteger wip= new AtomicInteger();
+    private volatile boolean done= false;
+    private volatile boolean cancelled= false;
+    private Throwable error;
+
+
+    private CoalescingSubscription(final Flow.Subscriber<? super Long> subscriber) {
+      this.subscriber= subscriber;
+    }
+
+
+    @Override
+    public void request(final long n) {
+      if (n <= 0) {
+        this.error= new IllegalArgumentException("Requested number of items must be positive, but was "+n);
+        this.done= true;
+      } else {
+        long current;
+        long next;
+        do {
+          current= this.requested.get();
+          next= current + n < 0 ? Long.MAX_VALUE : current + n;
+        } while (!this.requested.compareAndSet(current, next));
+      }
+      this.drain();
+    }
+
+
+    @Override
+    public void cancel() {
+      this.cancelled= true;
+      subscriptions.remove(this);
+    }
+
+
+    private void signal() {
+      this.pending.incrementAndGet();
+      this.drain();
+    }
+
+
+    private void complete() {
+      this.done= true;
+      this.drain();
+    }
+
+
+    private void drain() {
+      if (this.wip.getAndIncrement() != 0) {
+        return;
+      }
+
+      int missed= 1;
+      do {
+        if (this.cancelled) {
+          return;
+        }
+
+        if (this.requested.get() > 0) {
+          final long events= this.pending.getAndSet(0);
+          if (events > 0) {
+            if (this.requested.get() != Long.MAX_VALUE) {
+              this.requested.decrementAndGet();
+            }
+            try {
+              this.subscriber.onNext(events);
+            } catch (Throwable t) {
+              LOGGER.log(LogLevel.WARN, () -> "Subscriber "+this.subscriber+" threw Exception in onNext. Cancelling subscription.", t);
+              this.cancel();
+              return;
+            }
+          }
+        }
+
+        if (this.done) {
+          this.cancel();
+          if (this.error != null) {
+            this.subscriber.onError(this.error);
+          } else {
+            this.subscriber.onComplete();
+          }
+          return;
+        }
+
+        missed= this.wip.addAndGet(-missed);
+      } while (missed != 0);
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package de.poiu.fez;
+
+import java.util.concurrent.Flow;
+
+
+/**
+ * Adapters to consume fez events as {@link Flow.Publisher}s.
+ * <p>
+ * All publishers returned by this class emit events only on demand of their subscribers and
+ * coalesce events beyond that demand. See {@link CoalescingPublisher} for details.
+ * <p>
+ * This class is only available on Java 9 or higher.
+ *
+ * @author mherrn
+ */
+public final class FlowAdapters {
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Constructors
+
+  private FlowAdapters() {
+  }
+
+
+  /////////////////////////////////////////////////////////////////////////////
+  //
+  // Methods
+
+  /**
+   * Returns a publisher of the trigger events of the given trigger.
+   * <p>
+   * The publisher is notified by the thread calling {@link Trigger#trigger()}. No thread waits
+   * for the trigger events. The trigger events are not consumed, i.e. {@link Trigger#waitForTrigger()}
+   * still works independently of the publisher.
+   * <p>
+   * The publisher stays registered at the trigger until it is {@link CoalescingPublisher#close() closed}.
+   *
+   * @param trigger the trigger to publish the events of
+   * @return the publisher of the trigger events
+   */
+  public static CoalescingPublisher fromTrigger(final Trigger trigger) {
+    Require.nonNull(trigger, "trigger may not be null");
+    final CoalescingPublisher publisher= new CoalescingPublisher() {
+      @Override
+      public void close() {
+        trigger.removeTriggerListener(this);
+        super.close();
+      }
+    };
+    trigger.addTriggerListener(publisher);
+    return publisher;
+  }
+
+
+  /**
+   * Returns a new publisher for the ticks of a {@link ResettableTimer}.
+   * <p>
+   * The returned publisher must be used as the task of the timer:
+   * <p>
+   * <pre>
+   * final CoalescingPublisher ticks= FlowAdapters.timerTicks();
+   * ResettableTimer.createScheduleAtFixedRate(0, 1, TimeUnit.SECONDS, ticks).start();
+   * </pre>
+   *
+   * @return the publisher of the timer ticks
+   */
+  public static CoalescingPublisher timerTicks() {
+    return new CoalescingPublisher();
+  }
+}
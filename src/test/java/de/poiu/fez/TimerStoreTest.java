@@ -0,0 +1,135 @@
+package de.poiu.fez;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ *
+ * @author mherrn
+ */
+public class TimerStoreTest {
+
+  @Test
+  public void testFixedRateCatchUp_ExpiresOncePerRun() throws Exception {
+    final List<Long> expired= new ArrayList<>();
+    final TimerStore store= new TimerStore(expired::add);
+    final long handle= store.scheduleAtFixedRate(0, 1, TimeUnit.MILLISECONDS);
+
+    // let the timer fall behind by many periods
+    Thread.sleep(50);
+
+    assertThat(store.runExpired()).isEqualTo(1);
+    assertThat(expired).containsExactly(handle);
+    assertThat(store.isScheduled(handle)).isTrue();
+  }
+
+
+  @Test
+  public void testFixedRateCatchUp_BatchContainsHandleOnce() throws Exception {
+    final List<Long> expired= new ArrayList<>();
+    final TimerStore store= TimerStore.withBatchDispatch(16, 0, TimeUnit.MILLISECONDS, (handles, offset, length) -> {
+      for (int i= offset; i < offset + length; i++) {
+        expired.add(handles[i]);
+      }
+    });
+    final long handle1= store.scheduleAtFixedRate(0, 1, TimeUnit.MILLISECONDS);
+    final long handle2= store.scheduleAtFixedRate(0, 2, TimeUnit.MILLISECONDS);
+
+    Thread.sleep(50);
+
+    assertThat(store.runExpired()).isEqualTo(2);
+    assertThat(expired).containsExactlyInAnyOrder(handle1, handle2);
+  }
+
+
+  @Test
+  public void testFixedRateCatchUp_KeepsPhase() throws Exception {
+    final List<Long> expired= new ArrayList<>();
+    final TimerStore store= new TimerStore(expired::add);
+    final long handle= store.scheduleAtFixedRate(0, 100, TimeUnit.MILLISECONDS);
+
+    Thread.sleep(250);
+    store.runExpired();
+
+    // the next expiry is the next one of the original schedule at 300 ms, not a full period after now
+    assertThat(store.getDelay(handle, TimeUnit.MILLISECONDS)).isLessThan(90L);
+  }
+
+
+  @Test
+  public void testFixedRate_NoOverlapWithChunkedExecutor() throws Exception {
+    final ExecutorService executor= Executors.newFixedThreadPool(4);
+    try {
+      final AtomicInteger running= new AtomicInteger();
+      final AtomicInteger maxRunning= new AtomicInteger();
+      final AtomicInteger expiries= new AtomicInteger();
+      final TimerStore store= TimerStore.withBatchDispatch(16, 0, TimeUnit.MILLISECONDS, (handles, offset, length) -> {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        expiries.addAndGet(length);
+        try {
+          Thread.sleep(20);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+        running.decrementAndGet();
+      }, executor, 1);
+      final long handle= store.scheduleAtFixedRate(0, 1, TimeUnit.MILLISECONDS);
+
+      final long end= System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+      while (System.nanoTime() - end < 0) {
+        store.runExpired();
+        Thread.sleep(1);
+      }
+      store.cancel(handle);
+
+      assertThat(expiries.get()).isGreaterThan(1);
+      assertThat(maxRunning.get()).isEqualTo(1);
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(1, TimeUnit.SECONDS);
+    }
+  }
+
+
+  @Test
+  public void testBatchDispatch_WholeTickIsOneBatch() throws Exception {
+    final List<Integer> batchSizes= new ArrayList<>();
+    final TimerStore store= TimerStore.withBatchDispatch(16, 0, TimeUnit.MILLISECONDS, (handles, offset, length) -> {
+      batchSizes.add(length);
+    });
+    for (int i= 0; i < 10_000; i++) {
+      store.schedule(0, TimeUnit.MILLISECONDS);
+    }
+
+    Thread.sleep(1);
+
+    assertThat(store.runExpired()).isEqualTo(10_000);
+    assertThat(batchSizes).containsExactly(10_000);
+  }
+
+
+  @Test
+  public void testBatchDispatch_ChunksSpanWholeTick() throws Exception {
+    final List<Integer> chunkSizes= Collections.synchronizedList(new ArrayList<>());
+    final TimerStore store= TimerStore.withBatchDispatch(16, 0, TimeUnit.MILLISECONDS, (handles, offset, length) -> {
+      chunkSizes.add(length);
+    }, Runnable::run, 6_000);
+    for (int i= 0; i < 10_000; i++) {
+      store.schedule(0, TimeUnit.MILLISECONDS);
+    }
+
+    Thread.sleep(1);
+
+    assertThat(store.runExpired()).isEqualTo(10_000);
+    assertThat(chunkSizes).containsExactly(6_000, 4_000);
+  }
+}